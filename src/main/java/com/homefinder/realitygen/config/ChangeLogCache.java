@@ -0,0 +1,146 @@
+package com.homefinder.realitygen.config;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.parser.ChangeLogParser;
+import liquibase.parser.ChangeLogParserFactory;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import liquibase.resource.ResourceAccessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+
+/**
+ * Parses the tenant changelog once per migrating thread and reuses it across tenant migrations
+ * Liquibase mutates the parsed changelog while it runs (changeset checksums, filters,
+ * run state), so each thread keeps its own copy instead of sharing one between
+ * concurrent fleet workers. Copies are keyed by a SHA-256 over every changelog
+ * resource, so a new application version with changed changesets gets a fresh parse
+ */
+@Slf4j
+@Component
+public class ChangeLogCache {
+
+    @Value("${spring.liquibase.change-log}")
+    private String changeLogPath;
+
+    /**
+     * Resources that make up the tenant changelog (master file plus included scripts)
+     */
+    @Value("${realtygen.changelog.resources:classpath*:db/changelog/**/*.*}")
+    private String changeLogResources;
+
+    private final ResourceAccessor resourceAccessor = new ClassLoaderResourceAccessor();
+
+    private volatile String hash;
+
+    private final ThreadLocal<CachedChangeLog> threadChangeLog = new ThreadLocal<>();
+
+    /**
+     * Parsed changelog for migrations on the calling thread, not to be handed to other threads
+     */
+    public DatabaseChangeLog getChangeLog() {
+        String currentHash = getChangeLogHash();
+        CachedChangeLog cached = threadChangeLog.get();
+        if (cached == null || !cached.hash().equals(currentHash)) {
+            cached = new CachedChangeLog(currentHash, parse(currentHash));
+            threadChangeLog.set(cached);
+        }
+        return cached.changeLog();
+    }
+
+    /**
+     * Hash of the changelog contents, identifies the current changelog version
+     */
+    public String getChangeLogHash() {
+        String current = hash;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (hash == null) {
+                hash = hashChangeLogResources();
+            }
+            return hash;
+        }
+    }
+
+    public ResourceAccessor getResourceAccessor() {
+        return resourceAccessor;
+    }
+
+    public String getChangeLogFile() {
+        return changeLogPath.replace("classpath:", "");
+    }
+
+    /**
+     * Re-read the changelog hash; threads re-parse their copy when it changed
+     */
+    public synchronized void invalidate() {
+        hash = null;
+    }
+
+    private DatabaseChangeLog parse(String hash) {
+        String changeLogFile = getChangeLogFile();
+        try {
+            long start = System.nanoTime();
+            ChangeLogParser parser = ChangeLogParserFactory.getInstance().getParser(changeLogFile, resourceAccessor);
+            DatabaseChangeLog changeLog = parser.parse(changeLogFile, new ChangeLogParameters(), resourceAccessor);
+
+            log.debug("Parsed changelog {} ({} changesets, hash {}) for thread {} in {} ms", changeLogFile,
+                    changeLog.getChangeSets().size(), hash, Thread.currentThread().getName(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return changeLog;
+
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to parse changelog: " + changeLogFile, e);
+        }
+    }
+
+    private String hashChangeLogResources() {
+        try {
+            return hashResources();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read changelog resources: " + changeLogResources, e);
+        }
+    }
+
+    private String hashResources() throws Exception {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(changeLogResources);
+        Arrays.sort(resources, Comparator.comparing(ChangeLogCache::relativeName));
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (Resource resource : resources) {
+            if (!resource.isReadable()) {
+                continue;
+            }
+            digest.update(relativeName(resource).getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = resource.getInputStream()) {
+                digest.update(in.readAllBytes());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String relativeName(Resource resource) {
+        try {
+            String uri = resource.getURI().toString();
+            int index = uri.indexOf("db/changelog/");
+            return index >= 0 ? uri.substring(index) : uri;
+        } catch (Exception e) {
+            return String.valueOf(resource.getFilename());
+        }
+    }
+
+    private record CachedChangeLog(String hash, DatabaseChangeLog changeLog) {
+    }
+}
@@ -0,0 +1,187 @@
+package com.homefinder.realitygen.config;
+
+import com.homefinder.realitygen.entity.Tenant;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection pools: the shared Hikari pool (configured by spring.datasource.*)
+ * behind a tenant-aware router that can give large tenants pools of their own,
+ * with per-tenant admission control on the shared pool, optional read replicas
+ * for read-only tenant transactions, and pools for additional database shards.
+ * Programmatic transactions retry serialization failures, see {@link RetryingTransactionTemplate}
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class DataSourceConfig {
+
+    /**
+     * Upper bound on connections across the shared and all dedicated pools, keep it below max_connections
+     */
+    @Value("${realtygen.datasource.routing.max-total-connections:80}")
+    private int maxTotalConnections;
+
+    @Value("${realtygen.datasource.bulkhead.enabled:true}")
+    private boolean bulkheadEnabled;
+
+    @Value("${realtygen.datasource.bulkhead.max-per-tenant:4}")
+    private int maxConnectionsPerTenant;
+
+    /**
+     * Connections tenants may hold together on the shared pool, 0 for the pool size
+     */
+    @Value("${realtygen.datasource.bulkhead.max-concurrent:0}")
+    private int maxConcurrentTenantConnections;
+
+    @Value("${realtygen.datasource.bulkhead.timeout-ms:10000}")
+    private long bulkheadTimeoutMillis;
+
+    /**
+     * Round-robin weights as schema:weight pairs, e.g. tenant_big:3,tenant_vip:2
+     */
+    @Value("${realtygen.datasource.bulkhead.weights:}")
+    private String bulkheadWeights;
+
+    /**
+     * JDBC URLs of read replicas (same credentials as the primary), empty to read from the primary
+     */
+    @Value("${realtygen.datasource.replica.urls:}")
+    private List<String> replicaUrls;
+
+    /**
+     * Replicas further behind than this are skipped until they catch up
+     */
+    @Value("${realtygen.datasource.replica.max-lag-ms:5000}")
+    private long replicaMaxLagMillis;
+
+    /**
+     * Connections per replica pool, 0 for the shared pool size
+     */
+    @Value("${realtygen.datasource.replica.pool-size:0}")
+    private int replicaPoolSize;
+
+    /**
+     * Kept short so a dead replica costs little before reads fall back to the primary
+     */
+    @Value("${realtygen.datasource.replica.connection-timeout-ms:2000}")
+    private long replicaConnectionTimeoutMillis;
+
+    /**
+     * Attempts per transaction rejected with a serialization failure (a relocation cutover)
+     */
+    @Value("${realtygen.datasource.transaction.max-attempts:5}")
+    private int transactionMaxAttempts;
+
+    @Value("${realtygen.datasource.transaction.initial-backoff-ms:50}")
+    private long transactionInitialBackoffMillis;
+
+    @Value("${realtygen.datasource.transaction.max-backoff-ms:1000}")
+    private long transactionMaxBackoffMillis;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource sharedDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadReplicaPools readReplicaPools(HikariDataSource sharedDataSource) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariConfig config = new HikariConfig();
+            sharedDataSource.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            config.setPoolName(sharedDataSource.getPoolName() + "-replica-" + (replicas.size() + 1));
+            if (replicaPoolSize > 0) {
+                config.setMaximumPoolSize(replicaPoolSize);
+                config.setMinimumIdle(Math.min(config.getMinimumIdle(), replicaPoolSize));
+            }
+            config.setConnectionTimeout(replicaConnectionTimeoutMillis);
+            // Start even when a replica is down, the lag check brings it in later
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReadReplicaPools(replicas, replicaMaxLagMillis);
+    }
+
+    @Bean
+    public ReplicaRoutingTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new ReplicaRoutingTransactionManager(entityManagerFactory);
+    }
+
+    /**
+     * Replaces Boot's TransactionTemplate, so programmatic transactions survive a cutover
+     */
+    @Bean
+    public RetryingTransactionTemplate transactionTemplate(ReplicaRoutingTransactionManager transactionManager) {
+        return new RetryingTransactionTemplate(transactionManager, transactionMaxAttempts,
+                transactionInitialBackoffMillis, transactionMaxBackoffMillis);
+    }
+
+    @Bean
+    @Primary
+    public TenantRoutingDataSource dataSource(HikariDataSource sharedDataSource, ReadReplicaPools readReplicaPools,
+                                              ShardingProperties sharding) {
+        TenantConnectionBulkhead bulkhead = null;
+        if (bulkheadEnabled) {
+            int maxConcurrent = maxConcurrentTenantConnections > 0
+                    ? maxConcurrentTenantConnections : sharedDataSource.getMaximumPoolSize();
+            bulkhead = new TenantConnectionBulkhead(maxConnectionsPerTenant, maxConcurrent,
+                    bulkheadTimeoutMillis, parseWeights(bulkheadWeights));
+        }
+        return new TenantRoutingDataSource(sharedDataSource, maxTotalConnections, bulkhead,
+                readReplicaPools.isEmpty() ? null : readReplicaPools, shardPools(sharedDataSource, sharding));
+    }
+
+    private static Map<String, HikariDataSource> shardPools(HikariDataSource sharedDataSource,
+                                                            ShardingProperties sharding) {
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        sharding.shards().forEach((shardId, url) -> {
+            if (Tenant.PRIMARY_SHARD.equals(shardId)) {
+                throw new IllegalArgumentException("Shard id '" + shardId + "' is reserved for spring.datasource.url");
+            }
+            HikariConfig config = new HikariConfig();
+            sharedDataSource.copyStateTo(config);
+            config.setJdbcUrl(url);
+            config.setPoolName(sharedDataSource.getPoolName() + "-shard-" + shardId);
+            if (sharding.poolSize() > 0) {
+                config.setMaximumPoolSize(sharding.poolSize());
+                config.setMinimumIdle(Math.min(config.getMinimumIdle(), sharding.poolSize()));
+            }
+            pools.put(shardId, new HikariDataSource(config));
+        });
+        return pools;
+    }
+
+    private static Map<String, Integer> parseWeights(String weights) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String pair : weights.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            String[] parts = pair.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Bulkhead weight must be schema:weight, got: " + pair);
+            }
+            parsed.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,28 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor driving fleet-wide jobs (one thread per concurrently running job;
+ * the per-tenant workers are started by BoundedTenantTaskRunner)
+ */
+@Configuration
+public class FleetJobExecutorConfig {
+
+    @Value("${realtygen.fleet.jobs.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Bean(name = "fleetJobExecutor")
+    public ThreadPoolTaskExecutor fleetJobExecutor(TenantContextTaskDecorator tenantContextTaskDecorator) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("fleet-job-");
+        executor.setTaskDecorator(tenantContextTaskDecorator);
+        return executor;
+    }
+}
@@ -0,0 +1,22 @@
+package com.homefinder.realitygen.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers schema-per-tenant routing with Hibernate
+ */
+@Configuration
+public class HibernateMultiTenancyConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer multiTenancyCustomizer(SchemaPerTenantConnectionProvider connectionProvider,
+                                                                TenantIdentifierResolver tenantIdentifierResolver) {
+        return properties -> {
+            properties.put(AvailableSettings.MULTI_TENANT_CONNECTION_PROVIDER, connectionProvider);
+            properties.put(AvailableSettings.MULTI_TENANT_IDENTIFIER_RESOLVER, tenantIdentifierResolver);
+        };
+    }
+}
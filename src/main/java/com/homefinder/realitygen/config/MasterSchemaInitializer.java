@@ -0,0 +1,37 @@
+package com.homefinder.realitygen.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the master changelog (public schema) on startup
+ * so that tenant metadata tables exist before any tenant work runs
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MasterSchemaInitializer implements ApplicationRunner {
+
+    @Value("${realtygen.master.migrate-on-startup:true}")
+    private boolean migrateOnStartup;
+
+    private final MultiTenantLiquibaseService liquibaseService;
+
+    public MasterSchemaInitializer(MultiTenantLiquibaseService liquibaseService) {
+        this.liquibaseService = liquibaseService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!migrateOnStartup) {
+            log.info("Master schema migration on startup is disabled");
+            return;
+        }
+        liquibaseService.migrateMasterSchema();
+    }
+}
@@ -0,0 +1,157 @@
+package com.homefinder.realitygen.config;
+
+import com.homefinder.realitygen.dto.ChangeSetTiming;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.changelog.visitor.AbstractChangeExecListener;
+import liquibase.changelog.visitor.ChangeExecListener;
+import liquibase.database.Database;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer metrics for tenant migrations plus an in-memory
+ * slowest-changeset table for the tenantmigrations actuator endpoint
+ *
+ * Tenant-level meters are not tagged with the tenant to keep cardinality
+ * bounded; the slowest schema per changeset is tracked separately
+ */
+@Component
+public class MigrationMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Timer lockWaitTimer;
+    private final DistributionSummary rowsAffected;
+
+    private final ConcurrentMap<String, ChangeSetStats> changeSetStats = new ConcurrentHashMap<>();
+
+    public MigrationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.lockWaitTimer = Timer.builder("realtygen.tenant.migration.lock.wait")
+                .description("Time spent waiting for the per-schema migration lock")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rowsAffected = DistributionSummary.builder("realtygen.tenant.migration.rows.affected")
+                .description("Rows affected by a tenant migration, as reported by the Liquibase JDBC executor")
+                .baseUnit("rows")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Listener recording per-changeset durations for one tenant migration
+     * Create one per migration; it is not shared between threads
+     */
+    public ChangeExecListener changeSetListener(String schemaName) {
+        return new TimingListener(schemaName);
+    }
+
+    public void recordLockWait(long millis) {
+        lockWaitTimer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordTenantMigration(long nanos, boolean success, int rows) {
+        Timer.builder("realtygen.tenant.migration.duration")
+                .description("Wall-clock time of a single tenant migration")
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (rows > 0) {
+            rowsAffected.record(rows);
+        }
+    }
+
+    /**
+     * Changesets ordered by their slowest execution across the fleet
+     */
+    public List<ChangeSetTiming> slowestChangeSets(int limit) {
+        return changeSetStats.entrySet().stream()
+                .map(entry -> entry.getValue().toTiming(entry.getKey()))
+                .sorted(Comparator.comparingLong(ChangeSetTiming::getMaxMillis).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private void recordChangeSet(ChangeSet changeSet, String schemaName, long nanos, boolean success) {
+        String key = changeSet.getFilePath() + "::" + changeSet.getId() + "::" + changeSet.getAuthor();
+        Timer.builder("realtygen.tenant.migration.changeset.duration")
+                .description("Execution time of a single changeset on one tenant")
+                .tag("changeset", changeSet.getId())
+                .tag("author", changeSet.getAuthor())
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            Counter.builder("realtygen.tenant.migration.changeset.failures")
+                    .tag("changeset", changeSet.getId())
+                    .register(meterRegistry)
+                    .increment();
+        }
+        changeSetStats.computeIfAbsent(key, k -> new ChangeSetStats())
+                .record(TimeUnit.NANOSECONDS.toMillis(nanos), schemaName, success);
+    }
+
+    private class TimingListener extends AbstractChangeExecListener {
+
+        private final String schemaName;
+        private long changeSetStart;
+
+        TimingListener(String schemaName) {
+            this.schemaName = schemaName;
+        }
+
+        @Override
+        public void willRun(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog,
+                            Database database, ChangeSet.RunStatus runStatus) {
+            changeSetStart = System.nanoTime();
+        }
+
+        @Override
+        public void ran(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog,
+                        Database database, ChangeSet.ExecType execType) {
+            recordChangeSet(changeSet, schemaName, System.nanoTime() - changeSetStart, true);
+        }
+
+        @Override
+        public void runFailed(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog,
+                              Database database, Exception exception) {
+            recordChangeSet(changeSet, schemaName, System.nanoTime() - changeSetStart, false);
+        }
+    }
+
+    private static class ChangeSetStats {
+
+        private long executions;
+        private long failures;
+        private long totalMillis;
+        private long maxMillis;
+        private String slowestSchema;
+
+        synchronized void record(long millis, String schemaName, boolean success) {
+            executions++;
+            totalMillis += millis;
+            if (!success) {
+                failures++;
+            }
+            if (millis >= maxMillis) {
+                maxMillis = millis;
+                slowestSchema = schemaName;
+            }
+        }
+
+        synchronized ChangeSetTiming toTiming(String changeSet) {
+            double mean = executions == 0 ? 0 : (double) totalMillis / executions;
+            return new ChangeSetTiming(changeSet, executions, failures, mean, maxMillis, slowestSchema);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.homefinder.realitygen.config;
+
+import liquibase.ChecksumVersion;
+import liquibase.change.Change;
+import liquibase.change.core.TagDatabaseChange;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.util.LiquibaseUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * SQL generated from pending changesets, rendered once per changelog version
+ * The DDL Liquibase generates is the same for every tenant apart from the schema
+ * name, so it is rendered against a placeholder schema, cached, and applied to
+ * each tenant with batched JDBC plus the matching databasechangelog rows
+ */
+@Slf4j
+@Component
+public class MigrationSqlTemplateCache {
+
+    /**
+     * Stands in for the tenant schema in rendered SQL
+     */
+    static final String SCHEMA_TOKEN = "__realtygen_schema__";
+
+    @Value("${realtygen.liquibase.sql-template.enabled:false}")
+    private boolean enabled;
+
+    @Value("${realtygen.liquibase.sql-template.max-entries:64}")
+    private int maxEntries;
+
+    private final ChangeLogCache changeLogCache;
+
+    private final ConcurrentMap<String, SqlTemplate> templates = new ConcurrentHashMap<>();
+
+    public MigrationSqlTemplateCache(ChangeLogCache changeLogCache) {
+        this.changeLogCache = changeLogCache;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cached template for this set of pending changesets, rendering it on first use
+     *
+     * @param pending Changesets not yet applied to the tenant, in changelog order
+     * @param database Liquibase database of the tenant connection
+     * @return The template, or null when the changesets have to go through Liquibase
+     */
+    public SqlTemplate templateFor(List<ChangeSet> pending, Database database) throws Exception {
+        String key = changeLogCache.getChangeLogHash() + "|" + pending.stream()
+                .map(changeSet -> changeSet.getFilePath() + "::" + changeSet.getId() + "::" + changeSet.getAuthor())
+                .collect(Collectors.joining(","));
+
+        SqlTemplate template = templates.get(key);
+        if (template != null) {
+            return template.isApplicable() ? template : null;
+        }
+
+        template = render(key, pending, database);
+        if (templates.size() >= maxEntries) {
+            templates.clear();
+        }
+        templates.put(key, template);
+        return template.isApplicable() ? template : null;
+    }
+
+    /**
+     * Apply a template to a tenant schema in one transaction
+     *
+     * @return Rows affected by the changeset statements
+     */
+    public int apply(Connection connection, String schemaName, SqlTemplate template) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int rowsAffected = 0;
+            try (Statement stmt = connection.createStatement()) {
+                for (ChangeSetSql changeSet : template.changeSets()) {
+                    for (String sql : changeSet.statements()) {
+                        stmt.addBatch(sql.replace(SCHEMA_TOKEN, schemaName));
+                    }
+                }
+                for (int count : stmt.executeBatch()) {
+                    rowsAffected += Math.max(count, 0);
+                }
+            }
+
+            markRan(connection, schemaName, template);
+            connection.commit();
+            log.info("Applied {} changesets to schema {} from cached SQL", template.changeSets().size(), schemaName);
+            return rowsAffected;
+
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * SQL script for review, with the schema filled in
+     */
+    public String toScript(SqlTemplate template, String schemaName) {
+        StringBuilder script = new StringBuilder();
+        for (ChangeSetSql changeSet : template.changeSets()) {
+            script.append("-- Changeset ").append(changeSet.filePath()).append("::")
+                    .append(changeSet.id()).append("::").append(changeSet.author()).append('\n');
+            for (String sql : changeSet.statements()) {
+                script.append(sql.replace(SCHEMA_TOKEN, schemaName)).append(";\n");
+            }
+            script.append('\n');
+        }
+        return script.toString();
+    }
+
+    /**
+     * Drop every cached template
+     */
+    public void invalidate() {
+        templates.clear();
+    }
+
+    private SqlTemplate render(String key, List<ChangeSet> pending, Database database) throws Exception {
+        String unsupported = findUnsupported(pending, database);
+        if (unsupported != null) {
+            log.info("Pending changesets can't use cached SQL ({}), Liquibase will apply them", unsupported);
+            return new SqlTemplate(key, List.of(), unsupported);
+        }
+
+        String schemaName = database.getDefaultSchemaName();
+        database.setDefaultSchemaName(SCHEMA_TOKEN);
+        try {
+            List<ChangeSetSql> changeSets = new ArrayList<>();
+            for (ChangeSet changeSet : pending) {
+                List<String> statements = new ArrayList<>();
+                for (Change change : changeSet.getChanges()) {
+                    for (Sql sql : SqlGeneratorFactory.getInstance().generateSql(change, database)) {
+                        statements.add(sql.toSql());
+                    }
+                }
+                changeSets.add(new ChangeSetSql(
+                        changeSet.getId(),
+                        changeSet.getAuthor(),
+                        changeSet.getFilePath(),
+                        changeSet.generateCheckSum(ChecksumVersion.latest()).toString(),
+                        truncate(changeSet.getDescription()),
+                        truncate(changeSet.getComments()),
+                        emptyToNull(changeSet.getContextFilter() == null ? null : changeSet.getContextFilter().toString()),
+                        emptyToNull(changeSet.getLabels() == null ? null : changeSet.getLabels().toString()),
+                        statements));
+            }
+            log.info("Rendered SQL for {} pending changesets", changeSets.size());
+            return new SqlTemplate(key, changeSets, null);
+        } finally {
+            database.setDefaultSchemaName(schemaName);
+        }
+    }
+
+    /**
+     * Changesets whose effect isn't a fixed list of statements plus a databasechangelog row
+     */
+    private String findUnsupported(List<ChangeSet> pending, Database database) {
+        for (ChangeSet changeSet : pending) {
+            String name = changeSet.getId() + " by " + changeSet.getAuthor();
+            if (!changeSet.isRunInTransaction()) {
+                return name + " runs outside a transaction";
+            }
+            if (changeSet.isAlwaysRun() || changeSet.isRunOnChange()) {
+                return name + " is runAlways/runOnChange";
+            }
+            if (changeSet.getPreconditions() != null && !changeSet.getPreconditions().getNestedPreconditions().isEmpty()) {
+                return name + " has preconditions";
+            }
+            for (Change change : changeSet.getChanges()) {
+                if (change instanceof TagDatabaseChange) {
+                    return name + " tags the database";
+                }
+                if (change.generateStatementsVolatile(database)) {
+                    return name + " generates SQL from the live database";
+                }
+            }
+        }
+        return null;
+    }
+
+    private void markRan(Connection connection, String schemaName, SqlTemplate template) throws SQLException {
+        String deploymentId = String.valueOf(System.currentTimeMillis()).substring(3);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO " + schemaName + ".databasechangelog (id, author, filename, dateexecuted, orderexecuted, "
+                        + "exectype, md5sum, description, comments, liquibase, contexts, labels, deployment_id) "
+                        + "VALUES (?, ?, ?, now(), (SELECT COALESCE(MAX(orderexecuted), 0) + 1 FROM "
+                        + schemaName + ".databasechangelog), 'EXECUTED', ?, ?, ?, ?, ?, ?, ?)")) {
+            for (ChangeSetSql changeSet : template.changeSets()) {
+                ps.setString(1, changeSet.id());
+                ps.setString(2, changeSet.author());
+                ps.setString(3, changeSet.filePath());
+                ps.setString(4, changeSet.checksum());
+                ps.setString(5, changeSet.description());
+                ps.setString(6, changeSet.comments());
+                ps.setString(7, LiquibaseUtil.getBuildVersion());
+                ps.setString(8, changeSet.contexts());
+                ps.setString(9, changeSet.labels());
+                ps.setString(10, deploymentId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > 255 ? value.substring(0, 255) : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    /**
+     * Rendered SQL for one set of pending changesets
+     *
+     * @param unsupportedReason Why Liquibase has to apply these changesets, null when the template is usable
+     */
+    public record SqlTemplate(String key, List<ChangeSetSql> changeSets, String unsupportedReason) {
+
+        public boolean isApplicable() {
+            return unsupportedReason == null;
+        }
+    }
+
+    /**
+     * Statements and databasechangelog bookkeeping for one changeset
+     */
+    public record ChangeSetSql(String id, String author, String filePath, String checksum, String description,
+                               String comments, String contexts, String labels, List<String> statements) {
+    }
+}
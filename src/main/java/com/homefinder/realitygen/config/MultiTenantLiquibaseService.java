@@ -1,8 +1,11 @@
 package com.homefinder.realitygen.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import liquibase.Contexts;
 import liquibase.LabelExpression;
 import liquibase.Liquibase;
+import liquibase.Scope;
+import liquibase.changelog.ChangeSet;
 import liquibase.database.Database;
 import liquibase.database.DatabaseFactory;
 import liquibase.database.jvm.JdbcConnection;
@@ -11,25 +14,60 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.sql.DataSource;
+import java.io.StringWriter;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Multi-Tenant Liquibase Service
- * Handles database schema migrations for each tenant
+ * Handles database schema migrations for each tenant, on the shard holding its schema
  */
 @Slf4j
 @Service
 public class MultiTenantLiquibaseService {
 
-    @Value("${spring.liquibase.change-log}")
-    private String changeLogPath;
+    /**
+     * First key of the two-key Postgres advisory locks taken per schema ("RGLB")
+     */
+    public static final int ADVISORY_LOCK_NAMESPACE = 0x52474C42;
+
+    /**
+     * Scope key under which Liquibase's JdbcExecutor accumulates update counts
+     */
+    private static final String ROWS_AFFECTED_SCOPE_KEY = "rowsAffected";
 
-    private final DataSource dataSource;
+    @Value("${realtygen.master.change-log:classpath:db/master/master-changelog.xml}")
+    private String masterChangeLogPath;
 
-    public MultiTenantLiquibaseService(DataSource dataSource) {
+    private final TenantRoutingDataSource dataSource;
+    private final ChangeLogCache changeLogCache;
+    private final SchemaMigrationCoordinator migrationCoordinator;
+    private final MigrationMetrics migrationMetrics;
+    private final OnlineMigrationPolicy onlinePolicy;
+    private final MigrationSqlTemplateCache sqlTemplateCache;
+    private final SearchPathCache searchPathCache;
+
+    public MultiTenantLiquibaseService(TenantRoutingDataSource dataSource,
+                                       ChangeLogCache changeLogCache,
+                                       SchemaMigrationCoordinator migrationCoordinator,
+                                       MigrationMetrics migrationMetrics,
+                                       OnlineMigrationPolicy onlinePolicy,
+                                       MigrationSqlTemplateCache sqlTemplateCache,
+                                       SearchPathCache searchPathCache) {
         this.dataSource = dataSource;
+        this.changeLogCache = changeLogCache;
+        this.migrationCoordinator = migrationCoordinator;
+        this.migrationMetrics = migrationMetrics;
+        this.onlinePolicy = onlinePolicy;
+        this.sqlTemplateCache = sqlTemplateCache;
+        this.searchPathCache = searchPathCache;
     }
 
     /**
@@ -39,50 +77,337 @@ public class MultiTenantLiquibaseService {
      * @param schemaName The schema name for this tenant
      */
     public void migrateSchema(String tenantId, String schemaName) {
+        // Concurrent callers on this node share one in-flight migration
+        migrationCoordinator.runOnce(schemaName, () -> runMigration(tenantId, schemaName, null));
+    }
+
+    /**
+     * Run Liquibase migration for a tenant schema on a given shard, whatever shard the
+     * schema is currently routed to (builds the copy of a schema being relocated)
+     *
+     * @param tenantId The tenant identifier
+     * @param schemaName The schema name for this tenant
+     * @param shardId Shard to create or migrate the schema on
+     */
+    public void migrateSchemaOnShard(String tenantId, String schemaName, String shardId) {
+        migrationCoordinator.runOnce(shardId + "/" + schemaName, () -> runMigration(tenantId, schemaName, shardId));
+    }
+
+    /**
+     * Run the migration, retrying lock timeouts with backoff in online mode
+     * The connection is returned to the pool while backing off
+     */
+    private void runMigration(String tenantId, String schemaName, String shardId) {
+        int maxAttempts = onlinePolicy.maxAttempts();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                runMigrationAttempt(tenantId, schemaName, shardId);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !onlinePolicy.isLockTimeout(e)) {
+                    if (onlinePolicy.isLockTimeout(e)) {
+                        throw new RuntimeException("Online migration aborted for tenant: " + tenantId
+                                + " after " + attempt + " lock timeouts", e);
+                    }
+                    throw e;
+                }
+                long backoff = onlinePolicy.backoffMillis(attempt);
+                log.warn("Lock timeout migrating schema {} (attempt {}/{}), retrying in {} ms",
+                        schemaName, attempt, maxAttempts, backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void runMigrationAttempt(String tenantId, String schemaName, String shardId) {
         log.info("Starting Liquibase migration for tenant: {} in schema: {}", tenantId, schemaName);
+        long start = System.nanoTime();
+        AtomicInteger rowsAffected = new AtomicInteger();
+        boolean success = false;
 
-        try (Connection connection = dataSource.getConnection()) {
+        HikariDataSource pool = dataSource.shardDataSource(shardId != null ? shardId : dataSource.shardOf(schemaName));
+        try (Connection connection = pool.getConnection()) {
+
+            // Serialize with other nodes migrating this schema
+            migrationMetrics.recordLockWait(acquireSchemaLock(connection, schemaName));
+            try {
+                // Create schema if it doesn't exist
+                boolean created = createSchemaIfNotExists(connection, schemaName);
+
+                // Set search path to tenant schema
+                searchPathCache.setSearchPath(connection, schemaName);
+
+                // Create Liquibase database object
+                Database database = DatabaseFactory.getInstance()
+                        .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+                database.setDefaultSchemaName(schemaName);
+                database.setLiquibaseSchemaName(schemaName);
 
-            // Create schema if it doesn't exist
-            createSchemaIfNotExists(connection, schemaName);
+                // Run Liquibase migration against this thread's already parsed changelog
+                Liquibase liquibase = createTenantLiquibase(database);
+                liquibase.setChangeExecListener(migrationMetrics.changeSetListener(schemaName));
 
-            // Set search path to tenant schema
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("SET search_path TO " + schemaName);
+                // Online mode: fail fast on locks and refuse blocking index builds, except on a
+                // schema nothing has been applied to yet (no rows, no traffic to block)
+                if (onlinePolicy.isEnabled()) {
+                    if (!created && hasAppliedChangeSets(connection, schemaName)) {
+                        onlinePolicy.verifyPendingChangeSets(liquibase);
+                    }
+                    onlinePolicy.apply(connection);
+                }
+
+                // SQL template mode: replay SQL rendered once for this changelog version
+                if (!sqlTemplateCache.isEnabled()
+                        || !applyFromSqlTemplate(liquibase, database, connection, schemaName, rowsAffected)) {
+                    // Liquibase's JDBC executor adds update counts to this scope value
+                    Scope.child(Map.of(ROWS_AFFECTED_SCOPE_KEY, rowsAffected),
+                            () -> liquibase.update(new Contexts(), new LabelExpression()));
+                }
+            } finally {
+                if (onlinePolicy.isEnabled()) {
+                    onlinePolicy.reset(connection);
+                }
+                // Liquibase may change the session's search_path on its own
+                searchPathCache.invalidate(connection);
+                releaseSchemaLock(pool, connection, schemaName);
             }
 
-            // Create Liquibase database object
+            success = true;
+            log.info("Successfully completed Liquibase migration for tenant: {} in schema: {}",
+                    tenantId, schemaName);
+
+        } catch (Exception e) {
+            log.error("Failed to run Liquibase migration for tenant: {} in schema: {}",
+                    tenantId, schemaName, e);
+            throw new RuntimeException("Liquibase migration failed for tenant: " + tenantId, e);
+        } finally {
+            migrationMetrics.recordTenantMigration(System.nanoTime() - start, success, rowsAffected.get());
+        }
+    }
+
+    /**
+     * Apply the pending changesets from the cached SQL template
+     *
+     * @return false when the changesets have to go through Liquibase instead
+     */
+    private boolean applyFromSqlTemplate(Liquibase liquibase, Database database, Connection connection,
+                                         String schemaName, AtomicInteger rowsAffected) throws Exception {
+        List<ChangeSet> pending = liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression());
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        MigrationSqlTemplateCache.SqlTemplate template = sqlTemplateCache.templateFor(pending, database);
+        if (template == null) {
+            return false;
+        }
+        rowsAffected.addAndGet(sqlTemplateCache.apply(connection, schemaName, template));
+        return true;
+    }
+
+    /**
+     * SQL the next migration would run for a tenant, for offline review
+     * Nothing is applied; the databasechangelog tables are created if missing
+     *
+     * @param tenantId The tenant identifier
+     * @param schemaName The schema name for this tenant
+     */
+    public String renderPendingSql(String tenantId, String schemaName) {
+        try (Connection connection = dataSource.getSchemaConnection(schemaName)) {
+            searchPathCache.setSearchPath(connection, schemaName);
+
             Database database = DatabaseFactory.getInstance()
                     .findCorrectDatabaseImplementation(new JdbcConnection(connection));
             database.setDefaultSchemaName(schemaName);
             database.setLiquibaseSchemaName(schemaName);
 
-            // Run Liquibase migration
+            Liquibase liquibase = createTenantLiquibase(database);
+            List<ChangeSet> pending = liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression());
+            if (pending.isEmpty()) {
+                return "";
+            }
+
+            MigrationSqlTemplateCache.SqlTemplate template = sqlTemplateCache.templateFor(pending, database);
+            if (template != null) {
+                return sqlTemplateCache.toScript(template, schemaName);
+            }
+
+            // Liquibase's own offline output for changesets the template can't express
+            StringWriter output = new StringWriter();
+            liquibase.update(new Contexts(), new LabelExpression(), output);
+            return output.toString();
+
+        } catch (Exception e) {
+            log.error("Failed to render pending SQL for tenant: {} in schema: {}", tenantId, schemaName, e);
+            throw new RuntimeException("Rendering pending SQL failed for tenant: " + tenantId, e);
+        }
+    }
+
+    /**
+     * Run the master changelog against the public schema
+     * (tenant metadata such as public.tenants lives here)
+     */
+    public void migrateMasterSchema() {
+        log.info("Starting Liquibase migration for master schema: public");
+
+        try (Connection connection = dataSource.getConnection()) {
+
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            database.setDefaultSchemaName("public");
+            database.setLiquibaseSchemaName("public");
+
             Liquibase liquibase = new Liquibase(
-                    changeLogPath.replace("classpath:", ""),
+                    masterChangeLogPath.replace("classpath:", ""),
                     new ClassLoaderResourceAccessor(),
                     database
             );
 
             liquibase.update(new Contexts(), new LabelExpression());
 
-            log.info("Successfully completed Liquibase migration for tenant: {} in schema: {}",
-                    tenantId, schemaName);
+            log.info("Successfully completed Liquibase migration for master schema");
 
         } catch (Exception e) {
-            log.error("Failed to run Liquibase migration for tenant: {} in schema: {}",
-                    tenantId, schemaName, e);
-            throw new RuntimeException("Liquibase migration failed for tenant: " + tenantId, e);
+            log.error("Failed to run Liquibase migration for master schema", e);
+            throw new RuntimeException("Liquibase migration failed for master schema", e);
+        }
+    }
+
+    /**
+     * Build a Liquibase instance for a tenant from the calling thread's parsed changelog
+     */
+    private Liquibase createTenantLiquibase(Database database) {
+        return new Liquibase(
+                changeLogCache.getChangeLog(),
+                changeLogCache.getResourceAccessor(),
+                database
+        );
+    }
+
+    /**
+     * Take the cross-node advisory lock for a schema on this connection
+     * Blocks inside Postgres rather than polling databasechangeloglock, so by the time
+     * it returns the Liquibase lock is free and any concurrent migration has finished
+     *
+     * @return Milliseconds spent waiting for the lock
+     */
+    private long acquireSchemaLock(Connection connection, String schemaName) throws Exception {
+        long start = System.nanoTime();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+            ps.setInt(1, ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, advisoryLockKey(schemaName));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return 0;
+                }
+            }
+        }
+
+        log.info("Schema {} is being migrated by another node, waiting for its advisory lock", schemaName);
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_lock(?, ?)")) {
+            ps.setInt(1, ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, advisoryLockKey(schemaName));
+            ps.execute();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Release the advisory lock taken with {@link #acquireSchemaLock}
+     * If the unlock fails the session may still hold the lock, and a pooled connection
+     * would keep it for as long as it lives; the connection is evicted from its pool
+     * instead, and closing it ends the session and the lock with it
+     */
+    public static void releaseSchemaLock(HikariDataSource pool, Connection connection, String schemaName) {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            ps.setInt(1, ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, advisoryLockKey(schemaName));
+            ps.execute();
+        } catch (Exception e) {
+            log.warn("Failed to release advisory lock for schema {}, evicting its connection", schemaName, e);
+            pool.evictConnection(connection);
         }
     }
 
+    /**
+     * Second advisory lock key for a schema (String.hashCode is stable across JVMs)
+     */
+    public static int advisoryLockKey(String schemaName) {
+        return schemaName.hashCode();
+    }
+
+    /**
+     * Create several schemas with one batched round trip per shard
+     *
+     * @param schemaNames Schemas to create if they don't exist
+     */
+    public void createSchemas(List<String> schemaNames) {
+        if (schemaNames.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String schemaName : schemaNames) {
+            byShard.computeIfAbsent(dataSource.shardOf(schemaName), shardId -> new ArrayList<>()).add(schemaName);
+        }
+
+        byShard.forEach((shardId, shardSchemas) -> {
+            try (Connection connection = dataSource.shardDataSource(shardId).getConnection();
+                 Statement stmt = connection.createStatement()) {
+                for (String schemaName : shardSchemas) {
+                    stmt.addBatch("CREATE SCHEMA IF NOT EXISTS " + schemaName);
+                }
+                stmt.executeBatch();
+                log.info("Created {} schemas on shard {} in one batch", shardSchemas.size(), shardId);
+
+            } catch (Exception e) {
+                log.error("Failed to create schemas in batch on shard {}", shardId, e);
+                throw new RuntimeException("Batched schema creation failed on shard " + shardId, e);
+            }
+        });
+    }
+
     /**
      * Create schema if it doesn't exist
+     *
+     * @return True when this call created it
      */
-    private void createSchemaIfNotExists(Connection connection, String schemaName) throws Exception {
+    private boolean createSchemaIfNotExists(Connection connection, String schemaName) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT 1 FROM pg_namespace WHERE nspname = ?")) {
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return false;
+                }
+            }
+        }
         try (Statement stmt = connection.createStatement()) {
             stmt.execute("CREATE SCHEMA IF NOT EXISTS " + schemaName);
-            log.info("Schema '{}' created or already exists", schemaName);
+            log.info("Schema '{}' created", schemaName);
+        }
+        return true;
+    }
+
+    /**
+     * True when the schema's databasechangelog exists and has at least one row
+     */
+    private static boolean hasAppliedChangeSets(Connection connection, String schemaName) throws Exception {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT to_regclass(?)")) {
+            ps.setString(1, schemaName + ".databasechangelog");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getString(1) == null) {
+                    return false;
+                }
+            }
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM " + schemaName + ".databasechangelog)")) {
+            return rs.next() && rs.getBoolean(1);
         }
     }
 
@@ -90,27 +415,104 @@ public class MultiTenantLiquibaseService {
      * Rollback last changeset for a tenant
      */
     public void rollbackLastChange(String tenantId, String schemaName) {
-        log.info("Rolling back last changeset for tenant: {} in schema: {}", tenantId, schemaName);
+        rollbackChanges(tenantId, schemaName, 1);
+    }
 
-        try (Connection connection = dataSource.getConnection()) {
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("SET search_path TO " + schemaName);
+    /**
+     * Rollback the last {@code count} changesets for a tenant
+     */
+    public void rollbackChanges(String tenantId, String schemaName, int count) {
+        runRollback(tenantId, schemaName, "last " + count + " changeset(s)",
+                (liquibase, connection) -> liquibase.rollback(count, new Contexts(), new LabelExpression()));
+    }
+
+    /**
+     * Rollback every changeset applied after the given tag for a tenant
+     */
+    public void rollbackToTag(String tenantId, String schemaName, String tag) {
+        runRollback(tenantId, schemaName, "changesets after tag " + tag,
+                (liquibase, connection) -> liquibase.rollback(tag, new Contexts(), new LabelExpression()));
+    }
+
+    /**
+     * Key of the changeset that rolling back the last {@code count} changesets would keep
+     *
+     * @return Changeset key, or an empty string when every applied changeset would be rolled back
+     */
+    public String changeSetBeforeLast(String schemaName, int count) {
+        try (Connection connection = dataSource.getSchemaConnection(schemaName)) {
+            List<String> applied = appliedChangeSets(connection, schemaName);
+            return applied.size() > count ? applied.get(count) : "";
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read the applied changesets of schema: " + schemaName, e);
+        }
+    }
+
+    /**
+     * Rollback every changeset applied after the given one for a tenant
+     * A tenant already at that changeset is left alone, so a retried rollback doesn't go further back
+     *
+     * @param keep Key of the last changeset to keep (see {@link #changeSetBeforeLast}), empty to roll back everything
+     */
+    public void rollbackToChangeSet(String tenantId, String schemaName, String keep) {
+        runRollback(tenantId, schemaName, "changesets after " + (keep.isEmpty() ? "the first" : keep),
+                (liquibase, connection) -> {
+                    List<String> applied = appliedChangeSets(connection, schemaName);
+                    int count = keep.isEmpty() ? applied.size() : applied.indexOf(keep);
+                    if (count < 0) {
+                        throw new IllegalStateException("Changeset " + keep + " is no longer applied to schema " + schemaName);
+                    }
+                    if (count == 0) {
+                        log.info("Schema {} is already rolled back to {}", schemaName, keep);
+                        return;
+                    }
+                    liquibase.rollback(count, new Contexts(), new LabelExpression());
+                });
+    }
+
+    /**
+     * Keys (id::author::filename) of the changesets applied to a schema, latest first
+     */
+    private static List<String> appliedChangeSets(Connection connection, String schemaName) throws Exception {
+        List<String> applied = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, author, filename FROM " + schemaName
+                     + ".databasechangelog ORDER BY orderexecuted DESC")) {
+            while (rs.next()) {
+                applied.add(rs.getString(1) + "::" + rs.getString(2) + "::" + rs.getString(3));
             }
+        }
+        return applied;
+    }
 
-            Database database = DatabaseFactory.getInstance()
-                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
-            database.setDefaultSchemaName(schemaName);
-            database.setLiquibaseSchemaName(schemaName);
+    @FunctionalInterface
+    private interface RollbackAction {
+        void apply(Liquibase liquibase, Connection connection) throws Exception;
+    }
 
-            Liquibase liquibase = new Liquibase(
-                    changeLogPath.replace("classpath:", ""),
-                    new ClassLoaderResourceAccessor(),
-                    database
-            );
+    private void runRollback(String tenantId, String schemaName, String description, RollbackAction action) {
+        log.info("Rolling back {} for tenant: {} in schema: {}", description, tenantId, schemaName);
+
+        HikariDataSource pool = dataSource.shardDataSource(dataSource.shardOf(schemaName));
+        try (Connection connection = pool.getConnection()) {
+            acquireSchemaLock(connection, schemaName);
+            try {
+                searchPathCache.setSearchPath(connection, schemaName);
 
-            liquibase.rollback(1, new Contexts(), new LabelExpression());
+                Database database = DatabaseFactory.getInstance()
+                        .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+                database.setDefaultSchemaName(schemaName);
+                database.setLiquibaseSchemaName(schemaName);
 
-            log.info("Successfully rolled back last changeset for tenant: {}", tenantId);
+                Liquibase liquibase = createTenantLiquibase(database);
+
+                action.apply(liquibase, connection);
+            } finally {
+                searchPathCache.invalidate(connection);
+                releaseSchemaLock(pool, connection, schemaName);
+            }
+
+            log.info("Successfully rolled back {} for tenant: {}", description, tenantId);
 
         } catch (Exception e) {
             log.error("Failed to rollback for tenant: {} in schema: {}", tenantId, schemaName, e);
@@ -118,4 +520,3 @@ public class MultiTenantLiquibaseService {
         }
     }
 }
-
@@ -0,0 +1,152 @@
+package com.homefinder.realitygen.config;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.change.AbstractSQLChange;
+import liquibase.change.Change;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.changelog.ChangeSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Settings for online (business-hours) tenant migrations
+ * Short lock and statement timeouts make a changeset fail fast instead of
+ * queueing behind long transactions, lock timeouts are retried with backoff,
+ * and blocking index builds are refused before anything runs
+ */
+@Slf4j
+@Component
+public class OnlineMigrationPolicy {
+
+    /**
+     * lock_not_available, raised when lock_timeout expires
+     */
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private static final Pattern CREATE_INDEX =
+            Pattern.compile("\\bCREATE\\s+(UNIQUE\\s+)?INDEX\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern CREATE_INDEX_CONCURRENTLY =
+            Pattern.compile("\\bCREATE\\s+(UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\b", Pattern.CASE_INSENSITIVE);
+
+    @Value("${realtygen.liquibase.online.enabled:false}")
+    private boolean enabled;
+
+    @Value("${realtygen.liquibase.online.lock-timeout-ms:2000}")
+    private long lockTimeoutMillis;
+
+    /**
+     * 0 disables the statement timeout
+     */
+    @Value("${realtygen.liquibase.online.statement-timeout-ms:0}")
+    private long statementTimeoutMillis;
+
+    @Value("${realtygen.liquibase.online.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${realtygen.liquibase.online.initial-backoff-ms:500}")
+    private long initialBackoffMillis;
+
+    @Value("${realtygen.liquibase.online.max-backoff-ms:15000}")
+    private long maxBackoffMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int maxAttempts() {
+        return enabled ? Math.max(1, maxAttempts) : 1;
+    }
+
+    /**
+     * Set session timeouts on the migration connection
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET lock_timeout = " + lockTimeoutMillis);
+            stmt.execute("SET statement_timeout = " + statementTimeoutMillis);
+        }
+    }
+
+    /**
+     * Restore server defaults before the connection goes back to the pool
+     */
+    public void reset(Connection connection) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("RESET lock_timeout");
+            stmt.execute("RESET statement_timeout");
+        } catch (SQLException e) {
+            log.warn("Failed to reset migration timeouts on connection", e);
+        }
+    }
+
+    /**
+     * Refuse pending changesets that would build an index while blocking writes:
+     * online mode requires CREATE INDEX CONCURRENTLY in a runInTransaction:false changeset
+     */
+    public void verifyPendingChangeSets(Liquibase liquibase) throws Exception {
+        for (ChangeSet changeSet : liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression())) {
+            for (Change change : changeSet.getChanges()) {
+                String problem = blockingIndexBuild(changeSet, change);
+                if (problem != null) {
+                    throw new IllegalStateException("Changeset " + changeSet.getId() + " by "
+                            + changeSet.getAuthor() + " " + problem + "; it cannot run in online mode");
+                }
+            }
+        }
+    }
+
+    /**
+     * Why the change would block writes while building an index, or null when it doesn't
+     */
+    static String blockingIndexBuild(ChangeSet changeSet, Change change) {
+        if (change instanceof CreateIndexChange) {
+            return "uses createIndex, which blocks writes while the index builds";
+        }
+        if (change instanceof AbstractSQLChange sqlChange) {
+            String sql = sqlChange.getSql();
+            if (sql == null || !CREATE_INDEX.matcher(sql).find()) {
+                return null;
+            }
+            if (!CREATE_INDEX_CONCURRENTLY.matcher(sql).find()) {
+                return "builds an index without CONCURRENTLY";
+            }
+            if (changeSet.isRunInTransaction()) {
+                return "builds an index CONCURRENTLY inside a transaction (set runInTransaction:false)";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True when the failure was a lock_timeout, which is worth retrying
+     */
+    public boolean isLockTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && LOCK_NOT_AVAILABLE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exponential backoff with jitter for the given retry (1-based)
+     */
+    public long backoffMillis(int attempt) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
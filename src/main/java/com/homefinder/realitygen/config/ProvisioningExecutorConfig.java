@@ -0,0 +1,34 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Dedicated executor for asynchronous tenant provisioning
+ * Kept separate from request threads; a full queue rejects new jobs
+ * instead of letting signup bursts pile up work
+ */
+@Configuration
+public class ProvisioningExecutorConfig {
+
+    @Value("${realtygen.tenancy.provisioning.executor.threads:2}")
+    private int threads;
+
+    @Value("${realtygen.tenancy.provisioning.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Bean(name = "provisioningExecutor")
+    public ThreadPoolTaskExecutor provisioningExecutor(TenantContextTaskDecorator tenantContextTaskDecorator) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("tenant-provisioning-");
+        executor.setTaskDecorator(tenantContextTaskDecorator);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+}
@@ -0,0 +1,137 @@
+package com.homefinder.realitygen.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection pools of the read replicas, with a replication lag check
+ * Replicas are handed out round-robin; one lagging more than the allowed maximum,
+ * or unreachable, is skipped until a later check finds it caught up. Replicas start
+ * out skipped until their first check.
+ */
+@Slf4j
+public class ReadReplicaPools implements DisposableBean {
+
+    /**
+     * Replay lag in milliseconds; 0 when all received WAL is replayed (an idle primary
+     * doesn't make a replica look stale) or when the server isn't a standby at all.
+     * -1 when the standby isn't streaming from the primary: with nothing being received,
+     * received and replayed positions match however far behind it is.
+     */
+    private static final String LAG_QUERY = "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN -1 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicaPools(List<HikariDataSource> dataSources, long maxLagMillis) {
+        this.replicas = dataSources.stream().map(Replica::new).toList();
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    /**
+     * Next replica within the lag limit, or null when none is
+     */
+    public HikariDataSource pick() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica.dataSource;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stop using a replica that failed a checkout, until the next check
+     */
+    public void markFailed(HikariDataSource dataSource) {
+        for (Replica replica : replicas) {
+            if (replica.dataSource == dataSource) {
+                replica.available = false;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtygen.datasource.replica.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            boolean available;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(LAG_QUERY)) {
+                rs.next();
+                replica.lagMillis = rs.getLong(1);
+                available = replica.lagMillis >= 0 && replica.lagMillis <= maxLagMillis;
+                if (!available && replica.available) {
+                    if (replica.lagMillis < 0) {
+                        log.warn("Replica {} isn't streaming from the primary, reads go elsewhere until it reconnects",
+                                replica.dataSource.getPoolName());
+                    } else {
+                        log.warn("Replica {} is {} ms behind, reads go elsewhere until it catches up",
+                                replica.dataSource.getPoolName(), replica.lagMillis);
+                    }
+                }
+            } catch (SQLException e) {
+                replica.lagMillis = -1;
+                available = false;
+                if (replica.available) {
+                    log.warn("Replica {} is unreachable: {}", replica.dataSource.getPoolName(), e.getMessage());
+                }
+            }
+            if (available && !replica.available) {
+                log.info("Replica {} is serving reads ({} ms behind)", replica.dataSource.getPoolName(), replica.lagMillis);
+            }
+            replica.available = available;
+        }
+    }
+
+    /**
+     * Last measured lag by replica pool, -1 when unreachable or not streaming
+     */
+    public Map<String, Long> lag() {
+        Map<String, Long> lag = new LinkedHashMap<>();
+        replicas.forEach(replica -> lag.put(replica.dataSource.getPoolName(), replica.lagMillis));
+        return lag;
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Dedicated executor for tenant relocations between shards
+ * A relocation holds its thread for the whole copy and catch-up, so relocations get
+ * their own threads instead of taking the fleet job slots; a full queue rejects new ones
+ */
+@Configuration
+public class RelocationExecutorConfig {
+
+    @Value("${realtygen.tenancy.relocation.executor.threads:1}")
+    private int threads;
+
+    @Value("${realtygen.tenancy.relocation.executor.queue-capacity:10}")
+    private int queueCapacity;
+
+    @Bean(name = "relocationExecutor")
+    public ThreadPoolTaskExecutor relocationExecutor(TenantContextTaskDecorator tenantContextTaskDecorator) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("tenant-relocation-");
+        executor.setTaskDecorator(tenantContextTaskDecorator);
+        return executor;
+    }
+}
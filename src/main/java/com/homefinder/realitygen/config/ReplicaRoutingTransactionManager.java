@@ -0,0 +1,50 @@
+package com.homefinder.realitygen.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayDeque;
+
+/**
+ * JPA transaction manager that exposes whether the transaction being started is read-only
+ * Spring only publishes the read-only flag after the connection has been taken, too
+ * late for {@link TenantRoutingDataSource} to pick a replica, so the flag is set here
+ * before the transaction begins. Nested (REQUIRES_NEW) transactions stack.
+ */
+public class ReplicaRoutingTransactionManager extends JpaTransactionManager {
+
+    private static final ThreadLocal<ArrayDeque<Boolean>> READ_ONLY = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public ReplicaRoutingTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    /**
+     * Whether the innermost transaction on this thread is read-only
+     */
+    public static boolean isCurrentTransactionReadOnly() {
+        Boolean readOnly = READ_ONLY.get().peek();
+        return readOnly != null && readOnly;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        READ_ONLY.get().push(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            READ_ONLY.get().poll();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            READ_ONLY.get().poll();
+        }
+    }
+}
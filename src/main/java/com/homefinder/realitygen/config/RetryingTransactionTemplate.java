@@ -0,0 +1,88 @@
+package com.homefinder.realitygen.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Transaction template that runs the callback again, with backoff, when PostgreSQL
+ * rejects the transaction with a serialization failure (SQLSTATE 40001)
+ * Relocation fences the source copy of a tenant that way at cutover. Each attempt takes
+ * a new connection, which the routing data source sends to the shard the tenant is on
+ * by then. Only transactions the template starts itself are retried: a callback that
+ * joins an outer transaction fails with it, and the outer template retries the whole
+ */
+@Slf4j
+public class RetryingTransactionTemplate extends TransactionTemplate {
+
+    public static final String SERIALIZATION_FAILURE = "40001";
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryingTransactionTemplate(PlatformTransactionManager transactionManager, int maxAttempts,
+                                       long initialBackoffMillis, long maxBackoffMillis) {
+        super(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+    }
+
+    @Override
+    public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+        if (getPropagationBehavior() != PROPAGATION_REQUIRES_NEW
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            return super.execute(action);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return super.execute(action);
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !isSerializationFailure(e)) {
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                log.debug("Transaction hit a serialization failure (attempt {}/{}), retrying in {} ms: {}",
+                        attempt, maxAttempts, backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a serialization failure is anywhere in the cause chain, however the JPA
+     * provider and Spring wrapped it
+     */
+    public static boolean isSerializationFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && SERIALIZATION_FAILURE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exponential backoff with jitter for the given retry (1-based)
+     */
+    long backoffMillis(int attempt) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
@@ -0,0 +1,15 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (warm schema pool keeper, etc.) and @Async methods
+ * (run on Boot's application task executor, which carries the caller's tenant)
+ */
+@Configuration
+@EnableScheduling
+@EnableAsync
+public class SchedulingConfig {
+}
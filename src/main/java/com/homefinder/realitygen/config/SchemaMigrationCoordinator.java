@@ -0,0 +1,66 @@
+package com.homefinder.realitygen.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process single-flight registry for schema migrations
+ * Concurrent callers for the same schema share the in-flight migration's
+ * result instead of each taking a connection and queueing on the lock
+ */
+@Slf4j
+@Component
+public class SchemaMigrationCoordinator {
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run the migration, or wait for the one already running for this schema
+     *
+     * @param schemaName Schema the migration applies to
+     * @param migration Work to run if no migration is in flight
+     */
+    public void runOnce(String schemaName, Runnable migration) {
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(schemaName, mine);
+        if (existing != null) {
+            log.info("Migration for schema {} already in flight, waiting for its result", schemaName);
+            await(existing);
+            return;
+        }
+
+        try {
+            migration.run();
+            mine.complete(null);
+        } catch (Throwable e) {
+            // Errors too, or the callers waiting on this migration would wait forever
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(schemaName, mine);
+        }
+    }
+
+    public boolean isInFlight(String schemaName) {
+        return inFlight.containsKey(schemaName);
+    }
+
+    private static void await(CompletableFuture<Void> migration) {
+        try {
+            migration.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
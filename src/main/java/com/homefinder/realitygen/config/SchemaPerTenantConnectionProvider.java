@@ -0,0 +1,71 @@
+package com.homefinder.realitygen.config;
+
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands Hibernate pooled connections pointed at the tenant's schema
+ * The tenant identifier is the schema name and picks the shard, whatever tenant the
+ * thread is bound to; sessions without a tenant (tenant metadata) always use the primary.
+ * The search_path is only changed when the physical connection isn't on that schema already
+ */
+@Component
+public class SchemaPerTenantConnectionProvider implements MultiTenantConnectionProvider<String> {
+
+    private final transient TenantRoutingDataSource dataSource;
+    private final transient SearchPathCache searchPathCache;
+
+    public SchemaPerTenantConnectionProvider(TenantRoutingDataSource dataSource, SearchPathCache searchPathCache) {
+        this.dataSource = dataSource;
+        this.searchPathCache = searchPathCache;
+    }
+
+    @Override
+    public Connection getAnyConnection() throws SQLException {
+        return dataSource.getSharedDataSource().getConnection();
+    }
+
+    @Override
+    public void releaseAnyConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public Connection getConnection(String schemaName) throws SQLException {
+        Connection connection = dataSource.getTenantConnection(schemaName);
+        try {
+            searchPathCache.setSearchPath(connection, schemaName);
+            return connection;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void releaseConnection(String schemaName, Connection connection) throws SQLException {
+        // The search_path is left as is, the next checkout switches it only if needed
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isInstance(this);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (isUnwrappableAs(unwrapType)) {
+            return unwrapType.cast(this);
+        }
+        throw new IllegalArgumentException("Cannot unwrap to " + unwrapType);
+    }
+}
@@ -0,0 +1,67 @@
+package com.homefinder.realitygen.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Remembers the search_path of each physical connection in the pool
+ * Switching a connection to the schema it is already on skips the SET round trip.
+ * Entries are keyed by the unwrapped driver connection, which outlives the pool's
+ * per-checkout proxies, and disappear when the pool retires the connection.
+ * Every session-level search_path change must go through this class (or call
+ * {@link #invalidate(Connection)}) to keep the cache truthful.
+ */
+@Slf4j
+@Component
+public class SearchPathCache {
+
+    private final Map<Object, String> searchPaths = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Point the connection at a schema, unless it already is
+     */
+    public void setSearchPath(Connection connection, String schemaName) throws SQLException {
+        Object physical = physicalConnection(connection);
+        if (schemaName.equals(searchPaths.get(physical))) {
+            return;
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET search_path TO " + quote(schemaName));
+        }
+
+        // Inside a transaction the SET is undone by a rollback, so it can't be trusted later
+        if (connection.getAutoCommit()) {
+            searchPaths.put(physical, schemaName);
+        } else {
+            searchPaths.remove(physical);
+        }
+    }
+
+    /**
+     * Forget what the connection is set to (after anything else may have changed it)
+     */
+    public void invalidate(Connection connection) {
+        try {
+            searchPaths.remove(physicalConnection(connection));
+        } catch (SQLException e) {
+            log.warn("Failed to invalidate cached search_path", e);
+        }
+    }
+
+    private static Object physicalConnection(Connection connection) throws SQLException {
+        return connection.isWrapperFor(PGConnection.class) ? connection.unwrap(PGConnection.class) : connection;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,20 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+
+/**
+ * Databases tenant schemas can be placed on, besides the primary
+ * realtygen.sharding.shards.&lt;shard id&gt;=&lt;JDBC URL&gt;, using the primary's credentials
+ *
+ * @param shards JDBC URL by shard id
+ * @param poolSize Connections per shard pool, 0 for the shared pool size
+ */
+@ConfigurationProperties("realtygen.sharding")
+public record ShardingProperties(Map<String, String> shards, int poolSize) {
+
+    public ShardingProperties {
+        shards = shards != null ? shards : Map.of();
+    }
+}
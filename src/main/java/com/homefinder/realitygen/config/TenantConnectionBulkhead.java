@@ -0,0 +1,270 @@
+package com.homefinder.realitygen.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for tenant connections on the shared pool
+ * Each tenant may hold at most a fixed number of connections and all tenants
+ * together at most the pool size. Callers over either limit wait in a queue per
+ * tenant; freed permits go to the queued tenants in weighted round-robin order,
+ * so a tenant flooding the pool waits its turn behind small tenants instead of
+ * starving them. Callers that wait too long fail with SQLTransientConnectionException.
+ */
+public class TenantConnectionBulkhead {
+
+    private final int maxPerTenant;
+    private final int maxConcurrent;
+    private final long timeoutNanos;
+    private final Map<String, Integer> weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<String, TenantState> tenants = new HashMap<>();
+
+    /**
+     * Tenants with queued callers, in round-robin order (head is served next)
+     */
+    private final ArrayDeque<TenantState> rotation = new ArrayDeque<>();
+
+    private int inUse;
+
+    /**
+     * @param maxPerTenant Connections one tenant may hold at once
+     * @param maxConcurrent Connections all tenants may hold at once
+     * @param timeoutMillis Longest a caller waits for admission
+     * @param weights Round-robin weight by schema (permits granted per turn), 1 when absent
+     */
+    public TenantConnectionBulkhead(int maxPerTenant, int maxConcurrent, long timeoutMillis,
+                                    Map<String, Integer> weights) {
+        this.maxPerTenant = maxPerTenant;
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.weights = Map.copyOf(weights);
+    }
+
+    /**
+     * Wait for admission, then take a connection; closing it returns the permit
+     *
+     * @param schemaName Tenant the connection is for
+     * @param connectionSource Where the connection comes from once admitted
+     */
+    public Connection getConnection(String schemaName, ConnectionSource connectionSource) throws SQLException {
+        acquire(schemaName);
+        try {
+            return withPermit(connectionSource.getConnection(), schemaName);
+        } catch (SQLException | RuntimeException e) {
+            release(schemaName);
+            throw e;
+        }
+    }
+
+    /**
+     * Connections held and callers queued per tenant
+     */
+    public Map<String, TenantAdmission> snapshot() {
+        lock.lock();
+        try {
+            Map<String, TenantAdmission> snapshot = new LinkedHashMap<>();
+            tenants.forEach((schemaName, state) ->
+                    snapshot.put(schemaName, new TenantAdmission(state.inUse, state.waiters.size())));
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(String schemaName) throws SQLException {
+        lock.lock();
+        try {
+            TenantState state = tenants.computeIfAbsent(schemaName, TenantState::new);
+
+            // Nobody queued: take the permit straight away when the limits allow
+            if (rotation.isEmpty() && state.inUse < maxPerTenant && inUse < maxConcurrent) {
+                grant(state);
+                return;
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            state.waiters.addLast(waiter);
+            if (state.waiters.size() == 1) {
+                rotation.addLast(state);
+            }
+            dispatch();
+
+            long remaining = timeoutNanos;
+            while (!waiter.granted) {
+                if (remaining <= 0) {
+                    abandon(state, waiter);
+                    throw new SQLTransientConnectionException("Tenant " + schemaName + " waited "
+                            + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms for a connection ("
+                            + state.inUse + " in use of " + maxPerTenant + " allowed per tenant, "
+                            + inUse + " of " + maxConcurrent + " in use overall)");
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        releaseLocked(state);
+                    } else {
+                        abandon(state, waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection for tenant " + schemaName, e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(String schemaName) {
+        lock.lock();
+        try {
+            TenantState state = tenants.get(schemaName);
+            if (state != null) {
+                releaseLocked(state);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(TenantState state) {
+        state.inUse--;
+        inUse--;
+        if (state.inUse == 0 && state.waiters.isEmpty()) {
+            tenants.remove(state.schemaName);
+        }
+        dispatch();
+    }
+
+    private void abandon(TenantState state, Waiter waiter) {
+        state.waiters.remove(waiter);
+        if (state.waiters.isEmpty()) {
+            rotation.remove(state);
+            state.credits = 0;
+            if (state.inUse == 0) {
+                tenants.remove(state.schemaName);
+            }
+        }
+    }
+
+    /**
+     * Hand free permits to queued callers, weighted round-robin over tenants
+     * A tenant at its own limit is skipped for this round
+     */
+    private void dispatch() {
+        while (inUse < maxConcurrent && !rotation.isEmpty()) {
+            TenantState next = null;
+            for (int i = 0; i < rotation.size(); i++) {
+                TenantState candidate = rotation.peekFirst();
+                if (candidate.inUse < maxPerTenant) {
+                    next = candidate;
+                    break;
+                }
+                candidate.credits = 0;
+                rotation.addLast(rotation.pollFirst());
+            }
+            if (next == null) {
+                return;
+            }
+
+            Waiter waiter = next.waiters.pollFirst();
+            grant(next);
+            waiter.granted = true;
+            waiter.condition.signal();
+
+            if (next.waiters.isEmpty()) {
+                rotation.pollFirst();
+                next.credits = 0;
+            } else if (++next.credits >= weights.getOrDefault(next.schemaName, 1)) {
+                next.credits = 0;
+                rotation.addLast(rotation.pollFirst());
+            }
+        }
+    }
+
+    private void grant(TenantState state) {
+        state.inUse++;
+        inUse++;
+    }
+
+    /**
+     * Proxy that returns the permit when the connection is closed (once)
+     */
+    private Connection withPermit(Connection connection, String schemaName) {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        release(schemaName);
+                    }
+                }
+            }
+            return invoke(connection, method, args);
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public record TenantAdmission(int inUse, int queued) {
+    }
+
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    private static final class TenantState {
+
+        private final String schemaName;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int inUse;
+
+        /**
+         * Permits granted in the tenant's current round-robin turn
+         */
+        private int credits;
+
+        TenantState(String schemaName) {
+            this.schemaName = schemaName;
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
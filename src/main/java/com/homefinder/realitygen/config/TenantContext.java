@@ -0,0 +1,128 @@
+package com.homefinder.realitygen.config;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Tenant bound to the current thread
+ * Set per request by {@link TenantContextInterceptor}; Hibernate sessions opened
+ * while a tenant is bound are routed to that tenant's schema. Work handed to other
+ * threads keeps the tenant through {@link TenantContextTaskDecorator} (Spring
+ * executors) or the {@code wrap} methods (any other executor, CompletableFuture stages).
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<CurrentTenant> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static void set(String tenantId, String schemaName) {
+        CURRENT.set(new CurrentTenant(tenantId, schemaName));
+    }
+
+    /**
+     * Tenant id of the current thread, or null when no tenant is bound
+     */
+    public static String getTenantId() {
+        CurrentTenant current = CURRENT.get();
+        return current != null ? current.tenantId() : null;
+    }
+
+    /**
+     * Schema of the current thread's tenant, or null when no tenant is bound
+     */
+    public static String getSchemaName() {
+        CurrentTenant current = CURRENT.get();
+        return current != null ? current.schemaName() : null;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run a task bound to the given tenant, restoring the thread's previous tenant afterwards
+     * (e.g. per-tenant work in scheduled jobs, which start unbound)
+     */
+    public static void runAs(String tenantId, String schemaName, Runnable task) {
+        runWith(new CurrentTenant(tenantId, schemaName), task);
+    }
+
+    /**
+     * Task that runs bound to the tenant bound now, on whichever thread runs it
+     * Returns the task itself when no tenant is bound
+     */
+    public static Runnable wrap(Runnable task) {
+        CurrentTenant captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> runWith(captured, task);
+    }
+
+    /**
+     * Same as {@link #wrap(Runnable)} for a Callable
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        CurrentTenant captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            CurrentTenant previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #wrap(Runnable)} for a Supplier (CompletableFuture.supplyAsync)
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        CurrentTenant captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            CurrentTenant previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                return task.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void runWith(CurrentTenant tenant, Runnable task) {
+        CurrentTenant previous = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Pool threads go back unbound, a caller running the task itself gets its own tenant back
+     */
+    private static void restore(CurrentTenant previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Immutable, so the same instance is shared by every task it is propagated to
+     */
+    private record CurrentTenant(String tenantId, String schemaName) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.homefinder.realitygen.config;
+
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.service.LazyTenantMigrationService;
+import com.homefinder.realitygen.service.TenantRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.Optional;
+
+/**
+ * Binds the requesting tenant to the request thread
+ * The tenant comes from the X-Tenant-ID header, or else from the host name the
+ * request was sent to; both are resolved from the in-memory tenant registry.
+ * In lazy migration mode the tenant's schema is also migrated on its first
+ * request after a deploy, before any query runs against it
+ */
+@Slf4j
+@Component
+public class TenantContextInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String TENANT_HEADER = "X-Tenant-ID";
+
+    private final TenantRegistry tenantRegistry;
+    private final LazyTenantMigrationService lazyMigrationService;
+
+    public TenantContextInterceptor(TenantRegistry tenantRegistry,
+                                    LazyTenantMigrationService lazyMigrationService) {
+        this.tenantRegistry = tenantRegistry;
+        this.lazyMigrationService = lazyMigrationService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        Optional<Tenant> tenant;
+        String tenantId = request.getHeader(TENANT_HEADER);
+        if (tenantId == null || tenantId.isBlank()) {
+            // Not every host is a tenant host, requests to others aren't bound to a tenant
+            tenant = tenantRegistry.findByHostname(request.getServerName());
+            if (tenant.isEmpty()) {
+                return true;
+            }
+            tenantId = tenant.get().getTenantId();
+        } else {
+            tenant = tenantRegistry.findByTenantId(tenantId);
+        }
+
+        if (tenant.isEmpty() || !tenant.get().getActive()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown tenant: " + tenantId);
+            return false;
+        }
+
+        try {
+            lazyMigrationService.ensureMigrated(tenant.get());
+        } catch (Exception e) {
+            log.error("Just-in-time migration failed for tenant {}", tenantId, e);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Tenant schema is being upgraded, please retry");
+            return false;
+        }
+
+        TenantContext.set(tenantId, tenant.get().getSchemaName());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        TenantContext.clear();
+    }
+
+    /**
+     * The request continues on another thread (it gets the tenant from the task decorator,
+     * and preHandle binds it again on the async dispatch); unbind the servlet thread now
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        TenantContext.clear();
+    }
+}
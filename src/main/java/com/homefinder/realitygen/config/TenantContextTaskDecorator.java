@@ -0,0 +1,19 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Carries the submitting thread's tenant over to tasks run by Spring executors
+ * Applied to the provisioning and fleet job executors, and picked up by Boot for
+ * the application task executor (@Async, async MVC requests). Tasks submitted
+ * without a tenant run undecorated.
+ */
+@Component
+public class TenantContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return TenantContext.wrap(runnable);
+    }
+}
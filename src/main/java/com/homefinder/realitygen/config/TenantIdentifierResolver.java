@@ -0,0 +1,26 @@
+package com.homefinder.realitygen.config;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolves the Hibernate tenant identifier (the schema name) from {@link TenantContext}
+ * Sessions opened without a bound tenant use the baseline indian_housing schema, as before
+ * schema-per-tenant routing; the master entities name the public schema themselves
+ */
+@Component
+public class TenantIdentifierResolver implements CurrentTenantIdentifierResolver<String> {
+
+    public static final String DEFAULT_SCHEMA = "indian_housing";
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        String schemaName = TenantContext.getSchemaName();
+        return schemaName != null ? schemaName : DEFAULT_SCHEMA;
+    }
+
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package com.homefinder.realitygen.config;
+
+import com.homefinder.realitygen.dto.ChangeSetTiming;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint listing the slowest changesets across the fleet
+ * GET /actuator/tenantmigrations?limit=20
+ */
+@Component
+@Endpoint(id = "tenantmigrations")
+public class TenantMigrationsEndpoint {
+
+    private final MigrationMetrics migrationMetrics;
+
+    public TenantMigrationsEndpoint(MigrationMetrics migrationMetrics) {
+        this.migrationMetrics = migrationMetrics;
+    }
+
+    @ReadOperation
+    public List<ChangeSetTiming> slowestChangeSets(@OptionalParameter Integer limit) {
+        return migrationMetrics.slowestChangeSets(limit != null ? limit : 20);
+    }
+}
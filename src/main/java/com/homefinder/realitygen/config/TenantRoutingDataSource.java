@@ -0,0 +1,507 @@
+package com.homefinder.realitygen.config;
+
+import com.homefinder.realitygen.entity.Tenant;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DataSource that routes the current tenant to its connection pool
+ * Each tenant lives on a shard (database): the primary, served by the shared pool,
+ * or another shard with a pool of its own. Work not bound to a tenant uses the
+ * shared pool. Tenants assigned a dedicated pool get a Hikari pool of their own on
+ * their shard, created on first use.
+ * Requests find an open dedicated pool without locking. When a new pool would push
+ * the total past the connection budget, the least recently used idle pools are
+ * closed, and if none can be closed the tenant is served from the shared pool meanwhile.
+ * Tenants on the shared pool go through the {@link TenantConnectionBulkhead}.
+ * Read-only transactions of primary shard tenants go to a read replica when one is
+ * configured and caught up, and to the tenant's primary pool otherwise.
+ */
+@Slf4j
+public class TenantRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private final HikariDataSource sharedDataSource;
+    private final int maxTotalConnections;
+
+    /**
+     * Admission control for tenants on the shared pool, null when disabled
+     */
+    private final TenantConnectionBulkhead bulkhead;
+
+    /**
+     * Read replicas for read-only tenant transactions, null when none are configured
+     */
+    private final ReadReplicaPools replicas;
+
+    /**
+     * Pools of the shards other than the primary, by shard id
+     */
+    private final Map<String, HikariDataSource> shardPools;
+
+    /**
+     * Shard of each tenant schema (schemas without an entry are on the primary)
+     */
+    private final Map<String, String> shardBySchema = new ConcurrentHashMap<>();
+
+    /**
+     * Dedicated pool size per schema, as assigned in tenant metadata
+     */
+    private final Map<String, Integer> assignments = new ConcurrentHashMap<>();
+
+    /**
+     * Open dedicated pools; read without locking, changed while holding this
+     */
+    private final Map<String, DedicatedPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Dedicated pools being opened, so concurrent first requests for a schema wait for one pool
+     */
+    private final Map<String, CompletableFuture<DedicatedPool>> opening = new ConcurrentHashMap<>();
+
+    /**
+     * Connections of the pools being opened, counted against the budget (guarded by this)
+     */
+    private int openingConnections;
+
+    /**
+     * Pools taken out of service that still had connections in use (guarded by this)
+     */
+    private final List<HikariDataSource> retiring = new ArrayList<>();
+
+    public TenantRoutingDataSource(HikariDataSource sharedDataSource, int maxTotalConnections,
+                                   TenantConnectionBulkhead bulkhead, ReadReplicaPools replicas,
+                                   Map<String, HikariDataSource> shardPools) {
+        this.sharedDataSource = sharedDataSource;
+        this.maxTotalConnections = maxTotalConnections;
+        this.bulkhead = bulkhead;
+        this.replicas = replicas;
+        this.shardPools = Map.copyOf(shardPools);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getTenantConnection(TenantContext.getSchemaName());
+    }
+
+    /**
+     * Connection for a tenant's work, from its shard (dedicated pool, bulkhead or replica as
+     * configured); null or the default schema (sessions without a tenant) get the primary
+     */
+    public Connection getTenantConnection(String schemaName) throws SQLException {
+        if (schemaName == null || TenantIdentifierResolver.DEFAULT_SCHEMA.equals(schemaName)) {
+            return sharedDataSource.getConnection();
+        }
+        // Only tenant work: tenant metadata and migrations must read their own writes
+        if (replicas != null && isOnPrimaryShard(schemaName)
+                && ReplicaRoutingTransactionManager.isCurrentTransactionReadOnly()) {
+            HikariDataSource replica = replicas.pick();
+            if (replica != null) {
+                try {
+                    return replica.getConnection();
+                } catch (SQLException e) {
+                    replicas.markFailed(replica);
+                    log.warn("Replica {} failed a checkout, reading from the primary: {}",
+                            replica.getPoolName(), e.getMessage());
+                }
+            }
+        }
+        HikariDataSource dataSource = determineDataSource(schemaName);
+        if (dataSource == sharedDataSource && bulkhead != null) {
+            return bulkhead.getConnection(schemaName, sharedDataSource::getConnection);
+        }
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            // The pool may have been evicted between routing and checkout
+            if (dataSource.isClosed()) {
+                return getTenantConnection(schemaName);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return determineDataSource(TenantContext.getSchemaName()).getConnection(username, password);
+    }
+
+    public HikariDataSource getSharedDataSource() {
+        return sharedDataSource;
+    }
+
+    /**
+     * Connection to the database holding a schema, for work on the schema itself
+     * (migrations, schema copies, drops); not bound to the tenant's dedicated pool or bulkhead
+     */
+    public Connection getSchemaConnection(String schemaName) throws SQLException {
+        return shardDataSource(shardOf(schemaName)).getConnection();
+    }
+
+    /**
+     * Pool of a shard (the shared pool for the primary)
+     */
+    public HikariDataSource shardDataSource(String shardId) {
+        if (Tenant.PRIMARY_SHARD.equals(shardId)) {
+            return sharedDataSource;
+        }
+        HikariDataSource dataSource = shardPools.get(shardId);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shardId);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Ids of every shard, the primary first
+     */
+    public Set<String> shardIds() {
+        Set<String> shardIds = new LinkedHashSet<>();
+        shardIds.add(Tenant.PRIMARY_SHARD);
+        shardIds.addAll(new TreeSet<>(shardPools.keySet()));
+        return shardIds;
+    }
+
+    public String shardOf(String schemaName) {
+        return shardBySchema.getOrDefault(schemaName, Tenant.PRIMARY_SHARD);
+    }
+
+    public boolean isOnPrimaryShard(String schemaName) {
+        return Tenant.PRIMARY_SHARD.equals(shardOf(schemaName));
+    }
+
+    /**
+     * Record the shard of a schema, before anything is created in it
+     */
+    public void assignShard(String schemaName, String shardId) {
+        shardDataSource(shardId);
+        moveShard(schemaName, shardId);
+    }
+
+    /**
+     * Forget the shard of a schema that was placed but never provisioned
+     */
+    public void releaseShard(String schemaName) {
+        shardBySchema.remove(schemaName);
+    }
+
+    /**
+     * Record the shards of many schemas (entries for schemas not listed are kept)
+     * Unknown shards are skipped with a warning rather than failing the whole update
+     */
+    public void updateShardAssignments(Map<String, String> shards) {
+        shards.forEach((schemaName, shardId) -> {
+            if (Tenant.PRIMARY_SHARD.equals(shardId) || shardPools.containsKey(shardId)) {
+                moveShard(schemaName, shardId);
+            } else {
+                log.warn("Schema {} is assigned to unknown shard {}", schemaName, shardId);
+            }
+        });
+    }
+
+    /**
+     * A dedicated pool open for a schema that changed shards (relocation) still points
+     * at the old database; retire it so the next request opens one on the new shard
+     */
+    private void moveShard(String schemaName, String shardId) {
+        String previous = shardBySchema.put(schemaName, shardId);
+        if (previous != null && !previous.equals(shardId)) {
+            synchronized (this) {
+                DedicatedPool pool = pools.remove(schemaName);
+                if (pool != null) {
+                    retire(pool.dataSource());
+                }
+            }
+            log.info("Schema {} moved from shard {} to shard {}", schemaName, previous, shardId);
+        }
+    }
+
+    /**
+     * Replace every dedicated pool assignment (schema to maximum pool size)
+     * Pools of schemas no longer assigned, or assigned a new size, are retired
+     */
+    public void updateAssignments(Map<String, Integer> dedicated) {
+        for (String schemaName : List.copyOf(assignments.keySet())) {
+            if (!dedicated.containsKey(schemaName)) {
+                unassign(schemaName);
+            }
+        }
+        dedicated.forEach(this::assign);
+    }
+
+    /**
+     * Give a schema a dedicated pool of the given size (opened on its next connection request)
+     */
+    public void assign(String schemaName, int maximumPoolSize) {
+        Integer previous = assignments.put(schemaName, maximumPoolSize);
+        if (previous != null && previous != maximumPoolSize) {
+            synchronized (this) {
+                DedicatedPool pool = pools.get(schemaName);
+                if (pool != null) {
+                    // Hikari applies a new maximum at runtime
+                    pool.dataSource().getHikariConfigMXBean().setMaximumPoolSize(maximumPoolSize);
+                    pool.maximumPoolSize = maximumPoolSize;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a schema back to the shared pool
+     */
+    public void unassign(String schemaName) {
+        assignments.remove(schemaName);
+        synchronized (this) {
+            DedicatedPool pool = pools.remove(schemaName);
+            if (pool != null) {
+                retire(pool.dataSource());
+            }
+        }
+    }
+
+    /**
+     * Close dedicated pools unused for longer than the given time, plus retired pools that drained
+     *
+     * @return Number of pools closed
+     */
+    public synchronized int evictIdlePools(long idleMillis) {
+        int closed = 0;
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        Iterator<Map.Entry<String, DedicatedPool>> it = pools.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, DedicatedPool> entry = it.next();
+            DedicatedPool pool = entry.getValue();
+            if (pool.lastUsed < cutoff && activeConnections(pool.dataSource()) == 0) {
+                it.remove();
+                pool.dataSource().close();
+                log.info("Closed idle dedicated pool of schema {}", entry.getKey());
+                closed++;
+            }
+        }
+
+        Iterator<HikariDataSource> retired = retiring.iterator();
+        while (retired.hasNext()) {
+            HikariDataSource dataSource = retired.next();
+            if (activeConnections(dataSource) == 0) {
+                retired.remove();
+                dataSource.close();
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Maximum connections of open dedicated pools by schema, least recently used first
+     */
+    public synchronized Map<String, Integer> openPools() {
+        Map<String, Integer> open = new LinkedHashMap<>();
+        pools.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .forEach(entry -> open.put(entry.getKey(), entry.getValue().maximumPoolSize));
+        return open;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        pools.values().forEach(pool -> pool.dataSource().close());
+        pools.clear();
+        retiring.forEach(HikariDataSource::close);
+        retiring.clear();
+        shardPools.values().forEach(HikariDataSource::close);
+    }
+
+    public TenantConnectionBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public ReadReplicaPools getReplicas() {
+        return replicas;
+    }
+
+    private HikariDataSource determineDataSource(String schemaName) {
+        if (schemaName == null) {
+            return sharedDataSource;
+        }
+        HikariDataSource shardDataSource = shardDataSource(shardOf(schemaName));
+        Integer maximumPoolSize = assignments.get(schemaName);
+        if (maximumPoolSize == null) {
+            return shardDataSource;
+        }
+
+        DedicatedPool pool = pools.get(schemaName);
+        if (pool == null) {
+            pool = openPool(schemaName, shardDataSource, maximumPoolSize);
+            if (pool == null) {
+                return shardDataSource;
+            }
+        }
+        pool.lastUsed = System.currentTimeMillis();
+        return pool.dataSource();
+    }
+
+    /**
+     * Open a schema's dedicated pool, or wait for the request already opening it
+     * Only the budget bookkeeping runs under the lock; the pool (which connects to the
+     * database) is created and evicted pools are closed outside it
+     *
+     * @return The pool, or null when the budget has no room for it
+     */
+    private DedicatedPool openPool(String schemaName, HikariDataSource shardDataSource, int maximumPoolSize) {
+        CompletableFuture<DedicatedPool> mine = new CompletableFuture<>();
+        CompletableFuture<DedicatedPool> existing = opening.putIfAbsent(schemaName, mine);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                // Its caller got the error; this one tries again on its next request
+                return null;
+            }
+        }
+
+        try {
+            List<DedicatedPool> evicted = new ArrayList<>();
+            DedicatedPool open;
+            boolean fits;
+            synchronized (this) {
+                open = pools.get(schemaName);
+                fits = open == null && makeRoomFor(maximumPoolSize, evicted);
+                if (fits) {
+                    openingConnections += maximumPoolSize;
+                }
+            }
+            evicted.forEach(pool -> pool.dataSource().close());
+            if (open != null) {
+                mine.complete(open);
+                return open;
+            }
+            if (!fits) {
+                mine.complete(null);
+                return null;
+            }
+
+            DedicatedPool pool = null;
+            try {
+                pool = new DedicatedPool(createPool(shardDataSource, schemaName, maximumPoolSize),
+                        maximumPoolSize, System.currentTimeMillis());
+            } finally {
+                synchronized (this) {
+                    openingConnections -= maximumPoolSize;
+                    // Unassigned or moved to another shard while the pool was opening
+                    if (pool != null && (!assignments.containsKey(schemaName)
+                            || shardDataSource != shardDataSource(shardOf(schemaName)))) {
+                        retire(pool.dataSource());
+                        pool = null;
+                    } else if (pool != null) {
+                        pools.put(schemaName, pool);
+                    }
+                }
+            }
+            if (pool != null) {
+                log.info("Opened dedicated pool of {} connections for schema {}", maximumPoolSize, schemaName);
+            }
+            mine.complete(pool);
+            return pool;
+
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            opening.remove(schemaName, mine);
+        }
+    }
+
+    /**
+     * Take least recently used idle pools out of the map until the new pool fits the budget
+     * (the caller closes them once the lock is released)
+     */
+    private boolean makeRoomFor(int maximumPoolSize, List<DedicatedPool> evicted) {
+        List<Map.Entry<String, DedicatedPool>> byLastUse = new ArrayList<>(pools.entrySet());
+        byLastUse.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+        Iterator<Map.Entry<String, DedicatedPool>> it = byLastUse.iterator();
+        while (committedConnections() + maximumPoolSize > maxTotalConnections && it.hasNext()) {
+            Map.Entry<String, DedicatedPool> entry = it.next();
+            if (activeConnections(entry.getValue().dataSource()) == 0
+                    && pools.remove(entry.getKey(), entry.getValue())) {
+                evicted.add(entry.getValue());
+                log.info("Evicted least recently used pool of schema {}", entry.getKey());
+            }
+        }
+        return committedConnections() + maximumPoolSize <= maxTotalConnections;
+    }
+
+    private int committedConnections() {
+        int total = sharedDataSource.getMaximumPoolSize() + openingConnections;
+        for (DedicatedPool pool : pools.values()) {
+            total += pool.maximumPoolSize;
+        }
+        for (HikariDataSource dataSource : retiring) {
+            total += dataSource.getMaximumPoolSize();
+        }
+        return total;
+    }
+
+    private HikariDataSource createPool(HikariDataSource shardDataSource, String schemaName, int maximumPoolSize) {
+        HikariConfig config = new HikariConfig();
+        // Same settings and database as the shard's shared pool
+        shardDataSource.copyStateTo(config);
+        config.setPoolName(sharedDataSource.getPoolName() + "-" + schemaName);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(Math.min(config.getMinimumIdle(), maximumPoolSize));
+        return new HikariDataSource(config);
+    }
+
+    private void retire(HikariDataSource dataSource) {
+        if (activeConnections(dataSource) == 0) {
+            dataSource.close();
+        } else {
+            // Connections in use are returned first, the next eviction pass closes the pool
+            dataSource.getHikariPoolMXBean().softEvictConnections();
+            retiring.add(dataSource);
+        }
+    }
+
+    private static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? pool.getActiveConnections() : 0;
+    }
+
+    /**
+     * The size is changed under the owning TenantRoutingDataSource's lock; the last use
+     * is stamped by every request without it
+     */
+    private static final class DedicatedPool {
+
+        private final HikariDataSource dataSource;
+        private int maximumPoolSize;
+        private volatile long lastUsed;
+
+        DedicatedPool(HikariDataSource dataSource, int maximumPoolSize, long lastUsed) {
+            this.dataSource = dataSource;
+            this.maximumPoolSize = maximumPoolSize;
+            this.lastUsed = lastUsed;
+        }
+
+        HikariDataSource dataSource() {
+            return dataSource;
+        }
+    }
+}
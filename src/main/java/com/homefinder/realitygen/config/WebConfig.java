@@ -0,0 +1,25 @@
+package com.homefinder.realitygen.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Spring MVC configuration
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final TenantContextInterceptor tenantContextInterceptor;
+
+    public WebConfig(TenantContextInterceptor tenantContextInterceptor) {
+        this.tenantContextInterceptor = tenantContextInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Tenant management endpoints work on schemas directly and aren't bound to a tenant
+        registry.addInterceptor(tenantContextInterceptor)
+                .excludePathPatterns("/api/tenants/**");
+    }
+}
@@ -1,10 +1,36 @@
 package com.homefinder.realitygen.controller;
 
+import com.homefinder.realitygen.config.TenantConnectionBulkhead;
+import com.homefinder.realitygen.dto.BulkProvisioningReport;
+import com.homefinder.realitygen.dto.FleetJobStatusView;
+import com.homefinder.realitygen.dto.ProvisioningJob;
+import com.homefinder.realitygen.dto.TenantArchiveSummary;
+import com.homefinder.realitygen.dto.TenantProvisioningRequest;
+import com.homefinder.realitygen.entity.FleetJob;
 import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.entity.TenantRelocation;
+import com.homefinder.realitygen.enums.PoolTier;
+import com.homefinder.realitygen.service.FleetJobService;
+import com.homefinder.realitygen.service.ProvisioningJobService;
+import com.homefinder.realitygen.service.TenantArchiveService;
+import com.homefinder.realitygen.service.TenantDeprovisioningService;
+import com.homefinder.realitygen.service.TenantPoolAssignmentService;
 import com.homefinder.realitygen.service.TenantProvisioningService;
+import com.homefinder.realitygen.service.TenantRelocationService;
+import com.homefinder.realitygen.service.TenantShardService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
 
 /**
  * REST Controller for tenant management
@@ -16,36 +42,79 @@ import org.springframework.web.bind.annotation.*;
 public class TenantController {
 
     private final TenantProvisioningService provisioningService;
+    private final ProvisioningJobService provisioningJobService;
+    private final FleetJobService fleetJobService;
+    private final TenantArchiveService archiveService;
+    private final TenantDeprovisioningService deprovisioningService;
+    private final TenantPoolAssignmentService poolAssignmentService;
+    private final TenantShardService shardService;
+    private final TenantRelocationService relocationService;
 
-    public TenantController(TenantProvisioningService provisioningService) {
+    public TenantController(TenantProvisioningService provisioningService,
+                            ProvisioningJobService provisioningJobService,
+                            FleetJobService fleetJobService,
+                            TenantArchiveService archiveService,
+                            TenantDeprovisioningService deprovisioningService,
+                            TenantPoolAssignmentService poolAssignmentService,
+                            TenantShardService shardService,
+                            TenantRelocationService relocationService) {
         this.provisioningService = provisioningService;
+        this.provisioningJobService = provisioningJobService;
+        this.fleetJobService = fleetJobService;
+        this.archiveService = archiveService;
+        this.deprovisioningService = deprovisioningService;
+        this.poolAssignmentService = poolAssignmentService;
+        this.shardService = shardService;
+        this.relocationService = relocationService;
     }
 
     /**
-     * Provision a new tenant
+     * Provision a new tenant asynchronously
      * POST /api/tenants/provision?tenantId=abc123&tenantName=ABC Corp
+     * Returns 202 with the job; poll GET /api/tenants/jobs/{jobId} for its status
      */
     @PostMapping("/provision")
-    public ResponseEntity<String> provisionTenant(
+    public ResponseEntity<ProvisioningJob> provisionTenant(
             @RequestParam String tenantId,
             @RequestParam String tenantName) {
 
         try {
-            Tenant tenant = provisioningService.provisionNewTenant(tenantId, tenantName);
+            ProvisioningJob job = provisioningJobService.submit(tenantId, tenantName);
 
-            return ResponseEntity.ok(
-                String.format("Tenant '%s' provisioned successfully with schema: %s",
-                    tenant.getTenantName(),
-                    tenant.getSchemaName())
-            );
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/tenants/jobs/" + job.getJobId()))
+                .body(job);
 
-        } catch (Exception e) {
-            log.error("Failed to provision tenant", e);
-            return ResponseEntity.badRequest()
-                .body("Failed to provision tenant: " + e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .build();
         }
     }
 
+    /**
+     * Provision many tenants in one call
+     * POST /api/tenants/provision/bulk
+     * Body: [{"tenantId": "abc123", "tenantName": "ABC Corp"}, ...]
+     */
+    @PostMapping("/provision/bulk")
+    public ResponseEntity<BulkProvisioningReport> provisionTenants(
+            @RequestBody List<TenantProvisioningRequest> requests) {
+        BulkProvisioningReport report = provisioningService.provisionTenants(requests);
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Status of a provisioning job
+     * GET /api/tenants/jobs/{jobId}
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ProvisioningJob> getProvisioningJob(@PathVariable String jobId) {
+        return provisioningJobService.getJob(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     /**
      * Update tenant schema (run migrations)
      * POST /api/tenants/update?tenantId=abc123&schemaName=tenant_abc123
@@ -66,6 +135,295 @@ public class TenantController {
         }
     }
 
+    /**
+     * SQL the next update would run for a tenant, without applying it
+     * GET /api/tenants/pending-sql?tenantId=abc123&schemaName=tenant_abc123
+     */
+    @GetMapping(value = "/pending-sql", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> pendingMigrationSql(
+            @RequestParam String tenantId,
+            @RequestParam String schemaName) {
+
+        try {
+            return ResponseEntity.ok(provisioningService.pendingMigrationSql(tenantId, schemaName));
+
+        } catch (Exception e) {
+            log.error("Failed to render pending SQL", e);
+            return ResponseEntity.badRequest()
+                .body("Failed to render pending SQL: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Migrate every stale tenant in parallel as a background job with per-tenant checkpoints
+     * POST /api/tenants/update-all (or POST /api/tenants/fleet-jobs/migrate)
+     * Returns 202 with the job; poll GET /api/tenants/fleet-jobs/{jobId} for its status
+     */
+    @PostMapping({"/update-all", "/fleet-jobs/migrate"})
+    public ResponseEntity<FleetJob> startFleetMigration() {
+        FleetJob job = fleetJobService.startMigration();
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/tenants/fleet-jobs/" + job.getJobId()))
+            .body(job);
+    }
+
+    /**
+     * Staged rollout as a background job: canary wave first, then growing waves within error and latency budgets
+     * POST /api/tenants/rollout
+     * Returns 202 with the job; poll GET /api/tenants/fleet-jobs/{jobId} for its status
+     */
+    @PostMapping("/rollout")
+    public ResponseEntity<FleetJob> rollout() {
+        FleetJob job = fleetJobService.startRollout();
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/tenants/fleet-jobs/" + job.getJobId()))
+            .body(job);
+    }
+
+    /**
+     * Roll back every active tenant in parallel, by changeset count or to a tag
+     * POST /api/tenants/rollback-all?count=2
+     * POST /api/tenants/rollback-all?tag=release-1.4
+     */
+    @PostMapping("/rollback-all")
+    public ResponseEntity<?> rollbackAllTenantSchemas(
+            @RequestParam(required = false) Integer count,
+            @RequestParam(required = false) String tag) {
+
+        try {
+            FleetJob job = fleetJobService.startRollback(count, tag);
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/tenants/fleet-jobs/" + job.getJobId()))
+                .body(job);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Status of a fleet job with per-tenant checkpoint counts
+     * GET /api/tenants/fleet-jobs/{jobId}
+     */
+    @GetMapping("/fleet-jobs/{jobId}")
+    public ResponseEntity<FleetJobStatusView> getFleetJob(@PathVariable String jobId) {
+        return fleetJobService.getStatus(jobId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Most recent fleet jobs, newest first
+     * GET /api/tenants/fleet-jobs
+     */
+    @GetMapping("/fleet-jobs")
+    public ResponseEntity<List<FleetJob>> listFleetJobs() {
+        return ResponseEntity.ok(fleetJobService.recentJobs());
+    }
+
+    /**
+     * Resume a finished or failed fleet job for its failed and pending tenants
+     * POST /api/tenants/fleet-jobs/{jobId}/resume
+     */
+    @PostMapping("/fleet-jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeFleetJob(@PathVariable String jobId) {
+        try {
+            return fleetJobService.resume(jobId)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.accepted()
+                    .location(URI.create("/api/tenants/fleet-jobs/" + job.getJobId()))
+                    .body(job))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Deactivate a tenant now; its schema is archived and dropped later by the off-peak teardown job
+     * POST /api/tenants/deprovision?tenantId=abc123
+     */
+    @PostMapping("/deprovision")
+    public ResponseEntity<?> deprovisionTenant(@RequestParam String tenantId) {
+        try {
+            return ResponseEntity.accepted().body(deprovisioningService.deprovision(tenantId));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Undo a deprovisioning within the grace period
+     * POST /api/tenants/reactivate?tenantId=abc123
+     */
+    @PostMapping("/reactivate")
+    public ResponseEntity<?> reactivateTenant(@RequestParam String tenantId) {
+        try {
+            return ResponseEntity.ok(deprovisioningService.reactivate(tenantId));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Serve a tenant on a host name, omit hostname to remove it
+     * POST /api/tenants/hostname?tenantId=abc123&hostname=abc.realtygen.example
+     */
+    @PostMapping("/hostname")
+    public ResponseEntity<?> assignHostname(
+            @RequestParam String tenantId,
+            @RequestParam(required = false) String hostname) {
+
+        try {
+            return ResponseEntity.ok(provisioningService.assignHostname(tenantId, hostname));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Move a tenant between the shared pool and a dedicated pool
+     * POST /api/tenants/pool-tier?tenantId=abc123&tier=DEDICATED&poolSize=8
+     */
+    @PostMapping("/pool-tier")
+    public ResponseEntity<?> changePoolTier(
+            @RequestParam String tenantId,
+            @RequestParam PoolTier tier,
+            @RequestParam(required = false) Integer poolSize) {
+
+        try {
+            return ResponseEntity.ok(poolAssignmentService.changePoolTier(tenantId, tier, poolSize));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Dedicated pools open on this node, least recently used first
+     * GET /api/tenants/pools
+     */
+    @GetMapping("/pools")
+    public ResponseEntity<Map<String, Integer>> openPools() {
+        return ResponseEntity.ok(poolAssignmentService.openPools());
+    }
+
+    /**
+     * Connections held and callers queued per tenant on the shared pool
+     * GET /api/tenants/pools/shared
+     */
+    @GetMapping("/pools/shared")
+    public ResponseEntity<Map<String, TenantConnectionBulkhead.TenantAdmission>> sharedPoolAdmissions() {
+        return ResponseEntity.ok(poolAssignmentService.sharedPoolAdmissions());
+    }
+
+    /**
+     * Replication lag per read replica in milliseconds (-1 when unreachable)
+     * GET /api/tenants/pools/replicas
+     */
+    @GetMapping("/pools/replicas")
+    public ResponseEntity<Map<String, Long>> replicaLag() {
+        return ResponseEntity.ok(poolAssignmentService.replicaLag());
+    }
+
+    /**
+     * Tenant schemas per shard
+     * GET /api/tenants/shards
+     */
+    @GetMapping("/shards")
+    public ResponseEntity<Map<String, Integer>> shardLoads() {
+        return ResponseEntity.ok(shardService.shardLoads());
+    }
+
+    /**
+     * Move a tenant to another shard while it stays online
+     * POST /api/tenants/relocate?tenantId=abc123&targetShard=shard-2
+     * Returns 202 with the relocation; poll GET /api/tenants/relocations/{relocationId} for its status
+     */
+    @PostMapping("/relocate")
+    public ResponseEntity<?> relocateTenant(
+            @RequestParam String tenantId,
+            @RequestParam String targetShard) {
+
+        try {
+            TenantRelocation relocation = relocationService.submit(tenantId, targetShard);
+
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/tenants/relocations/" + relocation.getRelocationId()))
+                .body(relocation);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .build();
+        }
+    }
+
+    /**
+     * Status of a relocation
+     * GET /api/tenants/relocations/{relocationId}
+     */
+    @GetMapping("/relocations/{relocationId}")
+    public ResponseEntity<TenantRelocation> getRelocation(@PathVariable String relocationId) {
+        return relocationService.getRelocation(relocationId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Stream a tenant's data out as a zip archive (PostgreSQL COPY, binary format)
+     * GET /api/tenants/export?tenantId=abc123
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTenant(@RequestParam String tenantId) {
+        Tenant tenant;
+        try {
+            tenant = archiveService.requireTenant(tenantId);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + tenant.getSchemaName() + ".zip\"")
+            .body(out -> archiveService.exportSchema(tenant, out));
+    }
+
+    /**
+     * Load an exported archive into a tenant, provisioning it if needed
+     * POST /api/tenants/import?tenantId=abc123&tenantName=ABC Corp (body: the zip archive)
+     */
+    @PostMapping(value = "/import", consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> importTenant(
+            @RequestParam String tenantId,
+            @RequestParam(required = false) String tenantName,
+            HttpServletRequest request) {
+
+        try {
+            TenantArchiveSummary summary = archiveService.importTenant(tenantId,
+                tenantName != null ? tenantName : tenantId, request.getInputStream());
+            return ResponseEntity.ok(summary);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to import tenant archive", e);
+            return ResponseEntity.internalServerError()
+                .body("Failed to import tenant: " + e.getMessage());
+        }
+    }
+
     /**
      * Health check endpoint
      */
@@ -0,0 +1,26 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Per-tenant outcome of a bulk provisioning request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkProvisioningReport {
+
+    private int requested;
+
+    private int provisioned;
+
+    private int failed;
+
+    private long wallClockMillis;
+
+    private List<TenantTaskResult> results;
+}
@@ -0,0 +1,29 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fleet-wide execution statistics for one changeset
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeSetTiming {
+
+    private String changeSet;
+
+    private long executions;
+
+    private long failures;
+
+    private double meanMillis;
+
+    private long maxMillis;
+
+    /**
+     * Tenant schema where the slowest execution happened
+     */
+    private String slowestSchema;
+}
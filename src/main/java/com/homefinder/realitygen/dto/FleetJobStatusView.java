@@ -0,0 +1,27 @@
+package com.homefinder.realitygen.dto;
+
+import com.homefinder.realitygen.entity.FleetJob;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Fleet job with its checkpoint counts, as returned over REST
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetJobStatusView {
+
+    private FleetJob job;
+
+    private int pending;
+
+    private int succeeded;
+
+    private int failed;
+
+    private List<TenantTaskResult> failures;
+}
@@ -0,0 +1,40 @@
+package com.homefinder.realitygen.dto;
+
+import com.homefinder.realitygen.enums.ProvisioningJobState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Status of an asynchronous tenant provisioning request
+ * Instances are replaced, never modified, once published to the job store
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProvisioningJob {
+
+    private String jobId;
+
+    private String tenantId;
+
+    private String tenantName;
+
+    private String schemaName;
+
+    private ProvisioningJobState state;
+
+    private Instant submittedAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private Long durationMillis;
+
+    private String error;
+}
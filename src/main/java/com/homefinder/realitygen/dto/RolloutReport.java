@@ -0,0 +1,34 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a canary-wave rollout across the fleet
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RolloutReport {
+
+    private boolean halted;
+
+    private String haltReason;
+
+    private int staleTenants;
+
+    private int migrated;
+
+    private int failed;
+
+    private int remaining;
+
+    private long wallClockMillis;
+
+    private List<RolloutWaveReport> waves;
+
+    private List<TenantTaskResult> failures;
+}
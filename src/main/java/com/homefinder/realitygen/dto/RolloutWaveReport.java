@@ -0,0 +1,48 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Measurements for one wave of a staged rollout
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RolloutWaveReport {
+
+    private int wave;
+
+    private int tenants;
+
+    /**
+     * Highest worker count of the wave's shards
+     */
+    private int concurrency;
+
+    private int failed;
+
+    private double errorRate;
+
+    private long p95Millis;
+
+    private long wallClockMillis;
+
+    /**
+     * Active backends on the most loaded of the wave's shards when the wave started
+     */
+    private int activeConnectionsAtStart;
+
+    /**
+     * Worker count per shard id
+     */
+    private Map<String, Integer> concurrencyByShard;
+
+    /**
+     * Active backends per shard id when the wave started
+     */
+    private Map<String, Integer> activeConnectionsByShard;
+}
@@ -0,0 +1,31 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Outcome of a tenant export or import
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantArchiveSummary {
+
+    private String tenantId;
+
+    private String schemaName;
+
+    private String changelogHash;
+
+    /**
+     * Rows copied per table, in copy order
+     */
+    private Map<String, Long> tableRows;
+
+    private long totalRows;
+
+    private long durationMillis;
+}
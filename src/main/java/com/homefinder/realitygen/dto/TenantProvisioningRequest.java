@@ -0,0 +1,18 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One tenant in a bulk provisioning request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantProvisioningRequest {
+
+    private String tenantId;
+
+    private String tenantName;
+}
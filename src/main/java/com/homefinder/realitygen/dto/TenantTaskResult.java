@@ -0,0 +1,40 @@
+package com.homefinder.realitygen.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a single tenant operation within a fleet-wide run
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantTaskResult {
+
+    private String tenantId;
+
+    private String schemaName;
+
+    private boolean success;
+
+    private long durationMillis;
+
+    private String error;
+
+    public static TenantTaskResult succeeded(String tenantId, String schemaName, long durationMillis) {
+        return new TenantTaskResult(tenantId, schemaName, true, durationMillis, null);
+    }
+
+    public static TenantTaskResult failed(String tenantId, String schemaName, long durationMillis, Throwable error) {
+        return new TenantTaskResult(tenantId, schemaName, false, durationMillis, rootMessage(error));
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+}
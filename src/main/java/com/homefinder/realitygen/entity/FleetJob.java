@@ -0,0 +1,70 @@
+package com.homefinder.realitygen.entity;
+
+import com.homefinder.realitygen.enums.FleetJobStatus;
+import com.homefinder.realitygen.enums.FleetJobType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Fleet-wide job (migration, rollout or rollback) stored in public.fleet_jobs
+ * Per-tenant checkpoints live in public.fleet_job_tenants
+ */
+@Entity
+@Table(name = "fleet_jobs", schema = "public")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetJob {
+
+    @Id
+    @Column(length = 36)
+    private String jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private FleetJobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private FleetJobStatus status;
+
+    /**
+     * Number of changesets to roll back (rollback jobs)
+     */
+    private Integer rollbackCount;
+
+    /**
+     * Tag to roll back to (rollback jobs)
+     */
+    @Column(length = 100)
+    private String rollbackTag;
+
+    /**
+     * Changelog version the job applies (migration and rollout jobs)
+     */
+    @Column(length = 64)
+    private String changelogHash;
+
+    @Column(nullable = false)
+    private Integer concurrency;
+
+    /**
+     * Node currently executing the job
+     */
+    @Column(length = 100)
+    private String ownerNode;
+
+    private Instant heartbeatAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant finishedAt;
+
+    @Column(length = 1000)
+    private String error;
+}
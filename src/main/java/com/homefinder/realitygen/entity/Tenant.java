@@ -1,10 +1,14 @@
 package com.homefinder.realitygen.entity;
 
+import com.homefinder.realitygen.enums.PoolTier;
+import com.homefinder.realitygen.enums.TeardownStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 /**
  * Tenant entity to store tenant information
  * This will be stored in a master/public schema
@@ -16,6 +20,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class Tenant {
 
+    /**
+     * Shard of the database at spring.datasource.url, which also holds public.tenants
+     */
+    public static final String PRIMARY_SHARD = "primary";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -34,5 +43,56 @@ public class Tenant {
 
     @Column(length = 500)
     private String description;
+
+    /**
+     * Hash of the tenant changelog last applied to this schema
+     */
+    @Column(length = 64)
+    private String changelogHash;
+
+    private Instant schemaMigratedAt;
+
+    /**
+     * Set by a rollback so lazy migration doesn't re-apply what was rolled back;
+     * cleared by the next explicit update
+     */
+    @Column(nullable = false)
+    private Boolean schemaPinned = false;
+
+    /**
+     * When the tenant was deprovisioned, null while active
+     */
+    private Instant deactivatedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private TeardownStatus teardownStatus;
+
+    /**
+     * Archive written before the schema was dropped
+     */
+    @Column(length = 500)
+    private String archiveLocation;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PoolTier poolTier = PoolTier.SHARED;
+
+    /**
+     * Maximum connections of the tenant's own pool, null for the configured default
+     */
+    private Integer dedicatedPoolSize;
+
+    /**
+     * Host name the tenant is served on (lower case), when requests are routed by host
+     */
+    @Column(unique = true)
+    private String hostname;
+
+    /**
+     * Database (shard) holding the tenant's schema
+     */
+    @Column(nullable = false, length = 50)
+    private String shardId = PRIMARY_SHARD;
 }
 
@@ -0,0 +1,74 @@
+package com.homefinder.realitygen.entity;
+
+import com.homefinder.realitygen.enums.RelocationState;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Move of a tenant schema to another shard, stored in public.tenant_relocations
+ * Kept in the database so a relocation interrupted by a node failure is finished
+ * or cleaned up by the next node to notice it
+ */
+@Entity
+@Table(name = "tenant_relocations", schema = "public")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantRelocation {
+
+    @Id
+    @Column(length = 36)
+    private String relocationId;
+
+    @Column(nullable = false, length = 50)
+    private String tenantId;
+
+    @Column(nullable = false, length = 50)
+    private String schemaName;
+
+    @Column(nullable = false, length = 50)
+    private String sourceShard;
+
+    @Column(nullable = false, length = 50)
+    private String targetShard;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RelocationState state;
+
+    private long rowsCopied;
+
+    /**
+     * Changed rows replayed on the target after the bulk copy
+     */
+    private long changesReplayed;
+
+    /**
+     * How long the tenant's writes were held during the switch
+     */
+    private Long writePauseMillis;
+
+    /**
+     * Node currently executing the relocation
+     */
+    @Column(length = 100)
+    private String ownerNode;
+
+    private Instant heartbeatAt;
+
+    @Column(nullable = false)
+    private Instant submittedAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private Long durationMillis;
+
+    @Column(length = 1000)
+    private String error;
+}
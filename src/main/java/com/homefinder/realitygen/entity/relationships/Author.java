@@ -41,7 +41,7 @@ import java.util.List;
  * ═══════════════════════════════════════════════════════════════════════════════
  */
 @Entity
-@Table(name = "authors")
+@Table(name = "authors", schema = "indian_housing")
 public class Author {
 
     @Id
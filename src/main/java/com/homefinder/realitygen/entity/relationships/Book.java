@@ -34,7 +34,7 @@ import jakarta.persistence.*;
  * ═══════════════════════════════════════════════════════════════════════════════
  */
 @Entity
-@Table(name = "books")
+@Table(name = "books", schema = "indian_housing")
 public class Book {
 
     @Id
@@ -14,7 +14,7 @@ import java.util.List;
  * ═══════════════════════════════════════════════════════════════════════════════
  */
 @Entity
-@Table(name = "categories")
+@Table(name = "categories", schema = "indian_housing")
 public class Category {
 
     @Id
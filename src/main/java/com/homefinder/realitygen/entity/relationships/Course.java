@@ -23,7 +23,7 @@ import java.util.Set;
  * ═══════════════════════════════════════════════════════════════════════════════
  */
 @Entity
-@Table(name = "courses")
+@Table(name = "courses", schema = "indian_housing")
 public class Course {
 
     @Id
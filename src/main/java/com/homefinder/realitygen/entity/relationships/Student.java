@@ -45,7 +45,7 @@ import java.util.Set;
  * ═══════════════════════════════════════════════════════════════════════════════
  */
 @Entity
-@Table(name = "students")
+@Table(name = "students", schema = "indian_housing")
 public class Student {
 
     @Id
@@ -115,6 +115,7 @@ public class Student {
     )
     @JoinTable(
         name = "student_course_join",                        // Join table name
+        schema = "indian_housing",                           // Baseline schema, not per tenant
 
         joinColumns = @JoinColumn(
             name = "student_id",                             // Column for this entity
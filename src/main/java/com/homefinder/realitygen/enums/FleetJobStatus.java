@@ -0,0 +1,12 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Lifecycle of a fleet-wide job and of each tenant checkpoint within it
+ */
+public enum FleetJobStatus {
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    COMPLETED
+}
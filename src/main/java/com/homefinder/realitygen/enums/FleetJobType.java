@@ -0,0 +1,10 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Kind of fleet-wide job
+ */
+public enum FleetJobType {
+    MIGRATE,
+    ROLLOUT,
+    ROLLBACK
+}
@@ -0,0 +1,17 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * When tenant schemas are brought up to the current changelog
+ */
+public enum MigrationMode {
+
+    /**
+     * Explicitly, through fleet migrations, rollouts and update calls
+     */
+    EAGER,
+
+    /**
+     * Just in time, on a tenant's first request after a deploy, plus a background sweeper for idle tenants
+     */
+    LAZY
+}
@@ -0,0 +1,17 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Which connection pool serves a tenant's requests
+ */
+public enum PoolTier {
+
+    /**
+     * The shared pool used by the long tail of tenants
+     */
+    SHARED,
+
+    /**
+     * A Hikari pool of the tenant's own, sized by its dedicated pool size
+     */
+    DEDICATED
+}
@@ -0,0 +1,15 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Lifecycle of an asynchronous provisioning job
+ */
+public enum ProvisioningJobState {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,17 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * How a new tenant schema is built
+ */
+public enum ProvisioningMode {
+
+    /**
+     * Run the full tenant changelog with Liquibase
+     */
+    LIQUIBASE,
+
+    /**
+     * Copy structure, seed rows and changelog history from the template schema
+     */
+    TEMPLATE
+}
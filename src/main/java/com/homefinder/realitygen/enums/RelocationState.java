@@ -0,0 +1,40 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Progress of a tenant schema relocation to another shard
+ */
+public enum RelocationState {
+
+    QUEUED,
+
+    /**
+     * Change capture installed on the source, tables being bulk copied to the target
+     */
+    COPYING,
+
+    /**
+     * Replaying changes made on the source since the copy started
+     */
+    CATCHING_UP,
+
+    /**
+     * Writes paused, last changes replayed and the tenant switched to the target shard
+     */
+    CUTTING_OVER,
+
+    /**
+     * Serving from the target shard, source schema waiting to be dropped
+     */
+    CLEANING_UP,
+
+    SUCCEEDED,
+
+    /**
+     * Stopped before the switch; the tenant stays on the source shard
+     */
+    FAILED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
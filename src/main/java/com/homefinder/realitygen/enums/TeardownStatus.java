@@ -0,0 +1,27 @@
+package com.homefinder.realitygen.enums;
+
+/**
+ * Progress of a deprovisioned tenant's schema teardown
+ */
+public enum TeardownStatus {
+
+    /**
+     * Deactivated, schema still intact (can be reactivated)
+     */
+    PENDING,
+
+    /**
+     * Schema exported to the archive, tables being dropped
+     */
+    ARCHIVED,
+
+    /**
+     * Schema dropped
+     */
+    DROPPED,
+
+    /**
+     * Teardown stopped on an error, retried on the next run
+     */
+    FAILED
+}
@@ -0,0 +1,136 @@
+package com.homefinder.realitygen.repository;
+
+import com.homefinder.realitygen.dto.TenantTaskResult;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.FleetJobStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Per-tenant checkpoints of fleet jobs in public.fleet_job_tenants
+ * Plain JDBC so thousands of checkpoint rows are written in batches
+ */
+@Repository
+public class FleetJobCheckpointStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FleetJobCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Record every tenant of a new job as pending
+     */
+    public void addPending(String jobId, List<Tenant> tenants) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO public.fleet_job_tenants (job_id, schema_name, tenant_id, status) VALUES (?, ?, ?, ?)",
+                tenants, 500, (ps, tenant) -> {
+                    ps.setString(1, jobId);
+                    ps.setString(2, tenant.getSchemaName());
+                    ps.setString(3, tenant.getTenantId());
+                    ps.setString(4, FleetJobStatus.PENDING.name());
+                });
+    }
+
+    /**
+     * Tenants not finished yet, as lightweight Tenant objects (id, schema and shard only)
+     * The shard is read from public.tenants, so tenants relocated since the job started are
+     * counted against the shard they are on now
+     */
+    public List<Tenant> findPending(String jobId) {
+        return jdbcTemplate.query(
+                "SELECT j.tenant_id, j.schema_name, t.shard_id FROM public.fleet_job_tenants j "
+                        + "LEFT JOIN public.tenants t ON t.schema_name = j.schema_name "
+                        + "WHERE j.job_id = ? AND j.status = ? ORDER BY j.schema_name",
+                (rs, rowNum) -> {
+                    Tenant tenant = new Tenant();
+                    tenant.setTenantId(rs.getString("tenant_id"));
+                    tenant.setSchemaName(rs.getString("schema_name"));
+                    if (rs.getString("shard_id") != null) {
+                        tenant.setShardId(rs.getString("shard_id"));
+                    }
+                    return tenant;
+                },
+                jobId, FleetJobStatus.PENDING.name());
+    }
+
+    /**
+     * Checkpoint one tenant's outcome as soon as it finishes
+     */
+    public void record(String jobId, TenantTaskResult result) {
+        jdbcTemplate.update(
+                "UPDATE public.fleet_job_tenants SET status = ?, duration_ms = ?, error = ?, finished_at = ? "
+                        + "WHERE job_id = ? AND schema_name = ?",
+                (result.isSuccess() ? FleetJobStatus.SUCCEEDED : FleetJobStatus.FAILED).name(),
+                result.getDurationMillis(),
+                truncate(result.getError()),
+                Timestamp.from(Instant.now()),
+                jobId,
+                result.getSchemaName());
+    }
+
+    /**
+     * Changeset a count rollback keeps on a tenant, if already recorded
+     * An empty string means the rollback removes every changeset
+     */
+    public Optional<String> findRollbackTarget(String jobId, String schemaName) {
+        return jdbcTemplate.query(
+                "SELECT rollback_target FROM public.fleet_job_tenants WHERE job_id = ? AND schema_name = ?",
+                (rs, rowNum) -> rs.getString(1),
+                jobId, schemaName).stream().filter(Objects::nonNull).findFirst();
+    }
+
+    /**
+     * Record the changeset a count rollback keeps on a tenant, before anything is rolled back
+     */
+    public void recordRollbackTarget(String jobId, String schemaName, String target) {
+        jdbcTemplate.update(
+                "UPDATE public.fleet_job_tenants SET rollback_target = ? WHERE job_id = ? AND schema_name = ?",
+                target, jobId, schemaName);
+    }
+
+    /**
+     * Put a job's failed tenants back to pending so a resumed run retries them
+     *
+     * @return Number of tenants reset
+     */
+    public int resetFailed(String jobId) {
+        return jdbcTemplate.update(
+                "UPDATE public.fleet_job_tenants SET status = ?, duration_ms = NULL, error = NULL, finished_at = NULL "
+                        + "WHERE job_id = ? AND status = ?",
+                FleetJobStatus.PENDING.name(), jobId, FleetJobStatus.FAILED.name());
+    }
+
+    public Map<FleetJobStatus, Integer> countByStatus(String jobId) {
+        Map<FleetJobStatus, Integer> counts = new EnumMap<>(FleetJobStatus.class);
+        jdbcTemplate.query(
+                "SELECT status, count(*) FROM public.fleet_job_tenants WHERE job_id = ? GROUP BY status",
+                rs -> {
+                    counts.put(FleetJobStatus.valueOf(rs.getString(1)), rs.getInt(2));
+                },
+                jobId);
+        return counts;
+    }
+
+    public List<TenantTaskResult> findFailures(String jobId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT tenant_id, schema_name, duration_ms, error FROM public.fleet_job_tenants "
+                        + "WHERE job_id = ? AND status = ? ORDER BY schema_name LIMIT ?",
+                (rs, rowNum) -> new TenantTaskResult(rs.getString("tenant_id"), rs.getString("schema_name"),
+                        false, rs.getLong("duration_ms"), rs.getString("error")),
+                jobId, FleetJobStatus.FAILED.name(), limit);
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
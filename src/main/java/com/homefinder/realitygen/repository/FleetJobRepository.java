@@ -0,0 +1,46 @@
+package com.homefinder.realitygen.repository;
+
+import com.homefinder.realitygen.entity.FleetJob;
+import com.homefinder.realitygen.enums.FleetJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repository for fleet-wide jobs stored in public.fleet_jobs
+ */
+@Repository
+public interface FleetJobRepository extends JpaRepository<FleetJob, String> {
+
+    List<FleetJob> findByStatusOrderByCreatedAt(FleetJobStatus status);
+
+    List<FleetJob> findTop20ByOrderByCreatedAtDesc();
+
+    /**
+     * Take over a running job whose owner stopped sending heartbeats
+     * (or that this node owned before a restart)
+     *
+     * @return 1 if this node now owns the job
+     */
+    @Transactional
+    @Modifying
+    @Query("update FleetJob j set j.ownerNode = :node, j.heartbeatAt = :now "
+            + "where j.jobId = :jobId and j.status = com.homefinder.realitygen.enums.FleetJobStatus.RUNNING "
+            + "and (j.ownerNode = :node or j.heartbeatAt is null or j.heartbeatAt < :staleBefore)")
+    int claimStale(@Param("jobId") String jobId,
+                   @Param("node") String node,
+                   @Param("now") Instant now,
+                   @Param("staleBefore") Instant staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("update FleetJob j set j.heartbeatAt = :now where j.ownerNode = :node "
+            + "and j.status = com.homefinder.realitygen.enums.FleetJobStatus.RUNNING")
+    int heartbeat(@Param("node") String node, @Param("now") Instant now);
+}
@@ -0,0 +1,57 @@
+package com.homefinder.realitygen.repository;
+
+import com.homefinder.realitygen.entity.TenantRelocation;
+import com.homefinder.realitygen.enums.RelocationState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for tenant relocations stored in public.tenant_relocations
+ */
+@Repository
+public interface TenantRelocationRepository extends JpaRepository<TenantRelocation, String> {
+
+    List<TenantRelocation> findByStateNotInOrderBySubmittedAt(Collection<RelocationState> states);
+
+    Optional<TenantRelocation> findFirstByTenantIdAndStateNotIn(String tenantId, Collection<RelocationState> states);
+
+    /**
+     * Take over an unfinished relocation whose owner stopped sending heartbeats
+     * (or that this node owned before a restart)
+     *
+     * @return 1 if this node now owns the relocation
+     */
+    @Transactional
+    @Modifying
+    @Query("update TenantRelocation r set r.ownerNode = :node, r.heartbeatAt = :now "
+            + "where r.relocationId = :relocationId and r.state not in :finished "
+            + "and (r.ownerNode = :node or r.heartbeatAt is null or r.heartbeatAt < :staleBefore)")
+    int claimStale(@Param("relocationId") String relocationId,
+                   @Param("node") String node,
+                   @Param("now") Instant now,
+                   @Param("staleBefore") Instant staleBefore,
+                   @Param("finished") Collection<RelocationState> finished);
+
+    @Transactional
+    @Modifying
+    @Query("update TenantRelocation r set r.heartbeatAt = :now where r.ownerNode = :node "
+            + "and r.state not in :finished")
+    int heartbeat(@Param("node") String node,
+                  @Param("now") Instant now,
+                  @Param("finished") Collection<RelocationState> finished);
+
+    @Transactional
+    @Modifying
+    @Query("delete from TenantRelocation r where r.state in :finished and r.finishedAt < :cutoff")
+    int deleteFinishedBefore(@Param("finished") Collection<RelocationState> finished,
+                             @Param("cutoff") Instant cutoff);
+}
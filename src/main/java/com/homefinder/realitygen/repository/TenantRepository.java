@@ -0,0 +1,61 @@
+package com.homefinder.realitygen.repository;
+
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.PoolTier;
+import com.homefinder.realitygen.enums.TeardownStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for tenant metadata stored in public.tenants
+ */
+@Repository
+public interface TenantRepository extends JpaRepository<Tenant, Long> {
+
+    Optional<Tenant> findByTenantId(String tenantId);
+
+    Optional<Tenant> findBySchemaName(String schemaName);
+
+    List<Tenant> findByActiveTrueOrderBySchemaName();
+
+    List<Tenant> findByTeardownStatusInAndDeactivatedAtBeforeOrderByDeactivatedAt(Collection<TeardownStatus> statuses,
+                                                                                  Instant deactivatedBefore,
+                                                                                  Limit limit);
+
+    List<Tenant> findByPoolTierAndActiveTrue(PoolTier poolTier);
+
+    List<Tenant> findByTenantIdInOrSchemaNameIn(Collection<String> tenantIds, Collection<String> schemaNames);
+
+    @Transactional
+    @Modifying
+    @Query("update Tenant t set t.changelogHash = :changelogHash, t.schemaMigratedAt = :migratedAt, "
+            + "t.schemaPinned = false where t.schemaName = :schemaName")
+    int updateSchemaVersion(@Param("schemaName") String schemaName,
+                            @Param("changelogHash") String changelogHash,
+                            @Param("migratedAt") Instant migratedAt);
+
+    @Transactional
+    @Modifying
+    @Query("update Tenant t set t.changelogHash = null, t.schemaPinned = true where t.schemaName = :schemaName")
+    int pinRolledBackSchema(@Param("schemaName") String schemaName);
+
+    /**
+     * Point a schema at another shard, only if it is still on the expected one
+     */
+    @Transactional
+    @Modifying
+    @Query("update Tenant t set t.shardId = :targetShard where t.schemaName = :schemaName and t.shardId = :sourceShard")
+    int moveShard(@Param("schemaName") String schemaName,
+                  @Param("sourceShard") String sourceShard,
+                  @Param("targetShard") String targetShard);
+}
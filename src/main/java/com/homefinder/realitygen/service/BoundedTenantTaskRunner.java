@@ -0,0 +1,170 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.TenantContext;
+import com.homefinder.realitygen.dto.TenantTaskResult;
+import com.homefinder.realitygen.entity.Tenant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs one operation per tenant over fixed-size worker pools, one per shard
+ * Each worker holds at most one pooled connection, so the worker count
+ * is the number of connections the run may take from a shard's pool; shards
+ * are worked on in parallel
+ */
+@Slf4j
+@Component
+public class BoundedTenantTaskRunner {
+
+    @Value("${realtygen.fleet.progress-log-interval:100}")
+    private int progressLogInterval;
+
+    /**
+     * Connections left untouched for live request traffic when sizing from the pool
+     */
+    @Value("${realtygen.fleet.migration.reserved-connections:4}")
+    private int reservedConnections;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int maximumPoolSize;
+
+    /**
+     * Operation applied to a single tenant
+     */
+    @FunctionalInterface
+    public interface TenantTask {
+        void execute(Tenant tenant) throws Exception;
+    }
+
+    /**
+     * Run the task for every tenant with at most {@code concurrency} tenants per shard in flight
+     *
+     * @param operation Name used for worker threads and progress logs
+     * @param tenants Tenants to process
+     * @param concurrency Maximum number of tenants of one shard processed at the same time
+     * @param task Operation to apply to each tenant
+     * @return Per-tenant results in completion order
+     */
+    public List<TenantTaskResult> run(String operation, List<Tenant> tenants, int concurrency, TenantTask task) {
+        return run(operation, tenants, concurrency, task, result -> { });
+    }
+
+    /**
+     * Same as {@link #run(String, List, int, TenantTask)}, calling {@code onResult}
+     * as each tenant finishes (e.g. to checkpoint progress)
+     */
+    public List<TenantTaskResult> run(String operation, List<Tenant> tenants, int concurrency, TenantTask task,
+                                      Consumer<TenantTaskResult> onResult) {
+        return run(operation, tenants, shardId -> concurrency, task, onResult);
+    }
+
+    /**
+     * Same as {@link #run(String, List, int, TenantTask, Consumer)}, with the worker count
+     * of each shard given by {@code shardConcurrency} (called with the shard id)
+     */
+    public List<TenantTaskResult> run(String operation, List<Tenant> tenants, ToIntFunction<String> shardConcurrency,
+                                      TenantTask task, Consumer<TenantTaskResult> onResult) {
+        if (tenants.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, List<Tenant>> byShard = new LinkedHashMap<>();
+        for (Tenant tenant : tenants) {
+            String shardId = tenant.getShardId() != null ? tenant.getShardId() : Tenant.PRIMARY_SHARD;
+            byShard.computeIfAbsent(shardId, id -> new ArrayList<>()).add(tenant);
+        }
+
+        // One worker pool per shard, all feeding the same completion queue
+        BlockingQueue<Future<TenantTaskResult>> completed = new LinkedBlockingQueue<>();
+        List<ExecutorService> executors = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<Tenant>> shard : byShard.entrySet()) {
+                List<Tenant> shardTenants = shard.getValue();
+                int workers = Math.max(1, Math.min(shardConcurrency.applyAsInt(shard.getKey()), shardTenants.size()));
+                log.info("Starting {} for {} tenants on shard {} with {} workers",
+                        operation, shardTenants.size(), shard.getKey(), workers);
+
+                String threadPrefix = byShard.size() > 1 ? operation + "-" + shard.getKey() : operation;
+                ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory(threadPrefix));
+                executors.add(executor);
+                CompletionService<TenantTaskResult> completionService =
+                        new ExecutorCompletionService<>(executor, completed);
+                for (Tenant tenant : shardTenants) {
+                    // Workers run with the caller's tenant binding, if any
+                    completionService.submit(TenantContext.wrap(() -> execute(tenant, task)));
+                }
+            }
+
+            List<TenantTaskResult> results = new ArrayList<>(tenants.size());
+            int failed = 0;
+            for (int i = 0; i < tenants.size(); i++) {
+                TenantTaskResult result = completed.take().get();
+                results.add(result);
+                onResult.accept(result);
+                if (!result.isSuccess()) {
+                    failed++;
+                }
+                int done = i + 1;
+                if (done % progressLogInterval == 0 || done == tenants.size()) {
+                    log.info("{} progress: {}/{} tenants done, {} failed", operation, done, tenants.size(), failed);
+                }
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(operation + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(operation + " failed unexpectedly", e.getCause());
+        } finally {
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+    /**
+     * Worker count bounded by the connection pool: the requested value, or pool size
+     * minus the reserved connections when the request is 0 or larger than that
+     */
+    public int poolBoundedConcurrency(int requested) {
+        int available = Math.max(1, maximumPoolSize - reservedConnections);
+        return requested > 0 ? Math.min(requested, available) : available;
+    }
+
+    private TenantTaskResult execute(Tenant tenant, TenantTask task) {
+        long start = System.nanoTime();
+        try {
+            task.execute(tenant);
+            return TenantTaskResult.succeeded(tenant.getTenantId(), tenant.getSchemaName(), elapsedMillis(start));
+        } catch (Exception e) {
+            log.warn("Tenant {} ({}) failed: {}", tenant.getTenantId(), tenant.getSchemaName(), e.getMessage());
+            return TenantTaskResult.failed(tenant.getTenantId(), tenant.getSchemaName(), elapsedMillis(start), e);
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory(String operation) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(operation + "-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
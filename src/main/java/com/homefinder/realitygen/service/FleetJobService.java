@@ -0,0 +1,354 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.dto.FleetJobStatusView;
+import com.homefinder.realitygen.dto.RolloutReport;
+import com.homefinder.realitygen.entity.FleetJob;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.FleetJobStatus;
+import com.homefinder.realitygen.enums.FleetJobType;
+import com.homefinder.realitygen.repository.FleetJobCheckpointStore;
+import com.homefinder.realitygen.repository.FleetJobRepository;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fleet-wide jobs with per-tenant checkpoints in the public schema
+ * Every tenant's outcome is recorded as soon as it finishes, and the owning
+ * node sends heartbeats; a job whose owner dies is resumed by another node
+ * (or by the same node after a restart) for the remaining tenants only
+ */
+@Slf4j
+@Service
+public class FleetJobService {
+
+    @Value("${realtygen.fleet.migration.concurrency:0}")
+    private int migrationConcurrency;
+
+    @Value("${realtygen.fleet.jobs.rollback-concurrency:0}")
+    private int rollbackConcurrency;
+
+    /**
+     * A running job whose heartbeat is older than this is considered orphaned
+     */
+    @Value("${realtygen.fleet.jobs.heartbeat-lease-ms:60000}")
+    private long heartbeatLeaseMillis;
+
+    private final FleetJobRepository jobRepository;
+    private final FleetJobCheckpointStore checkpointStore;
+    private final TenantRepository tenantRepository;
+    private final BoundedTenantTaskRunner taskRunner;
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final TenantSchemaVersionService schemaVersionService;
+    private final LazyTenantMigrationService lazyMigrationService;
+    private final MigrationWaveScheduler waveScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor fleetJobExecutor;
+    private final String nodeId;
+
+    private final Set<String> runningHere = ConcurrentHashMap.newKeySet();
+
+    public FleetJobService(FleetJobRepository jobRepository,
+                           FleetJobCheckpointStore checkpointStore,
+                           TenantRepository tenantRepository,
+                           BoundedTenantTaskRunner taskRunner,
+                           MultiTenantLiquibaseService liquibaseService,
+                           TenantSchemaVersionService schemaVersionService,
+                           LazyTenantMigrationService lazyMigrationService,
+                           MigrationWaveScheduler waveScheduler,
+                           TransactionTemplate transactionTemplate,
+                           @Qualifier("fleetJobExecutor") TaskExecutor fleetJobExecutor,
+                           @Value("${realtygen.node-id:}") String nodeId) {
+        this.jobRepository = jobRepository;
+        this.checkpointStore = checkpointStore;
+        this.tenantRepository = tenantRepository;
+        this.taskRunner = taskRunner;
+        this.liquibaseService = liquibaseService;
+        this.schemaVersionService = schemaVersionService;
+        this.lazyMigrationService = lazyMigrationService;
+        this.waveScheduler = waveScheduler;
+        this.transactionTemplate = transactionTemplate;
+        this.fleetJobExecutor = fleetJobExecutor;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+    }
+
+    /**
+     * Start a checkpointed migration of every active tenant behind the current changelog
+     * The job is pinned to this node's changelog hash; only nodes on the same build resume it
+     */
+    public FleetJob startMigration() {
+        return startChangelogJob(FleetJobType.MIGRATE, taskRunner.poolBoundedConcurrency(migrationConcurrency));
+    }
+
+    /**
+     * Start a canary-wave rollout of the current changelog to every stale tenant
+     * A rollout halted by its error or latency budget ends FAILED with its remaining tenants
+     * pending, so resuming it continues in waves once the cause is fixed
+     */
+    public FleetJob startRollout() {
+        return startChangelogJob(FleetJobType.ROLLOUT, taskRunner.poolBoundedConcurrency(migrationConcurrency));
+    }
+
+    private FleetJob startChangelogJob(FleetJobType type, int concurrency) {
+        String changelogHash = schemaVersionService.currentChangeLogHash();
+        List<Tenant> staleTenants = tenantRepository.findByActiveTrueOrderBySchemaName().stream()
+                .filter(tenant -> !changelogHash.equals(tenant.getChangelogHash()))
+                .toList();
+
+        FleetJob job = newJob(type, concurrency);
+        job.setChangelogHash(changelogHash);
+        return start(job, staleTenants);
+    }
+
+    /**
+     * Start a parallel rollback across every active tenant
+     *
+     * @param count Number of changesets to roll back, or null when rolling back to a tag
+     * @param tag Tag to roll back to, or null when rolling back by count
+     */
+    public FleetJob startRollback(Integer count, String tag) {
+        if ((count == null) == (tag == null || tag.isBlank())) {
+            throw new IllegalArgumentException("Specify either a changeset count or a tag to roll back to");
+        }
+        if (count != null && count < 1) {
+            throw new IllegalArgumentException("Rollback count must be at least 1");
+        }
+
+        FleetJob job = newJob(FleetJobType.ROLLBACK, taskRunner.poolBoundedConcurrency(rollbackConcurrency));
+        job.setRollbackCount(count);
+        job.setRollbackTag(count == null ? tag : null);
+        return start(job, tenantRepository.findByActiveTrueOrderBySchemaName());
+    }
+
+    /**
+     * Re-run a finished or failed job for its failed and still pending tenants
+     * Tenants that already succeeded are not touched again
+     */
+    public Optional<FleetJob> resume(String jobId) {
+        Optional<FleetJob> found = jobRepository.findById(jobId);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        FleetJob job = found.get();
+        if (job.getStatus() == FleetJobStatus.RUNNING) {
+            throw new IllegalStateException("Fleet job " + jobId + " is still running");
+        }
+        if (!canRunHere(job)) {
+            throw new IllegalStateException("Fleet job " + jobId + " targets a different changelog than this node");
+        }
+
+        FleetJob resumed = transactionTemplate.execute(status -> {
+            checkpointStore.resetFailed(jobId);
+            job.setStatus(FleetJobStatus.RUNNING);
+            job.setOwnerNode(nodeId);
+            job.setHeartbeatAt(Instant.now());
+            job.setFinishedAt(null);
+            job.setError(null);
+            return jobRepository.save(job);
+        });
+        log.info("Resuming {} job {} on request", resumed.getJobType(), jobId);
+        submit(resumed);
+        return Optional.of(resumed);
+    }
+
+    public List<FleetJob> recentJobs() {
+        return jobRepository.findTop20ByOrderByCreatedAtDesc();
+    }
+
+    public Optional<FleetJobStatusView> getStatus(String jobId) {
+        return jobRepository.findById(jobId).map(job -> {
+            Map<FleetJobStatus, Integer> counts = checkpointStore.countByStatus(jobId);
+            return new FleetJobStatusView(job,
+                    counts.getOrDefault(FleetJobStatus.PENDING, 0),
+                    counts.getOrDefault(FleetJobStatus.SUCCEEDED, 0),
+                    counts.getOrDefault(FleetJobStatus.FAILED, 0),
+                    checkpointStore.findFailures(jobId, 100));
+        });
+    }
+
+    private FleetJob newJob(FleetJobType type, int concurrency) {
+        Instant now = Instant.now();
+        FleetJob job = new FleetJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setJobType(type);
+        job.setStatus(FleetJobStatus.RUNNING);
+        job.setConcurrency(concurrency);
+        job.setOwnerNode(nodeId);
+        job.setHeartbeatAt(now);
+        job.setCreatedAt(now);
+        return job;
+    }
+
+    /**
+     * Persist the job and its pending checkpoints in one transaction, then run it
+     */
+    private FleetJob start(FleetJob job, List<Tenant> tenants) {
+        FleetJob saved = transactionTemplate.execute(status -> {
+            FleetJob persisted = jobRepository.save(job);
+            checkpointStore.addPending(persisted.getJobId(), tenants);
+            return persisted;
+        });
+        log.info("Started {} job {} for {} tenants", job.getJobType(), job.getJobId(), tenants.size());
+        submit(saved);
+        return saved;
+    }
+
+    private void submit(FleetJob job) {
+        if (!runningHere.add(job.getJobId())) {
+            return;
+        }
+        try {
+            fleetJobExecutor.execute(() -> execute(job));
+        } catch (RuntimeException e) {
+            runningHere.remove(job.getJobId());
+            throw e;
+        }
+    }
+
+    private void execute(FleetJob job) {
+        String jobId = job.getJobId();
+        try {
+            List<Tenant> pending = checkpointStore.findPending(jobId);
+            log.info("Running {} job {}: {} tenants remaining", job.getJobType(), jobId, pending.size());
+
+            if (job.getJobType() == FleetJobType.ROLLOUT) {
+                RolloutReport report = waveScheduler.rollout(pending, job.getChangelogHash(), job.getConcurrency(),
+                        result -> checkpointStore.record(jobId, result));
+                if (report.isHalted()) {
+                    finish(jobId, FleetJobStatus.FAILED, "Rollout halted after wave "
+                            + report.getWaves().size() + ": " + report.getHaltReason());
+                    return;
+                }
+            } else {
+                taskRunner.run(job.getJobType().name().toLowerCase() + "-job", pending, job.getConcurrency(),
+                        tenant -> applyToTenant(job, tenant),
+                        result -> checkpointStore.record(jobId, result));
+            }
+
+            finish(jobId, FleetJobStatus.COMPLETED, null);
+
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Node shutting down: the job stays RUNNING and is resumed for its pending tenants
+                log.info("Fleet job {} interrupted, leaving it to be resumed", jobId);
+                return;
+            }
+            log.error("Fleet job {} failed", jobId, e);
+            finish(jobId, FleetJobStatus.FAILED, e.getMessage());
+        } finally {
+            runningHere.remove(jobId);
+        }
+    }
+
+    private void applyToTenant(FleetJob job, Tenant tenant) {
+        if (job.getJobType() == FleetJobType.ROLLBACK) {
+            if (job.getRollbackTag() != null) {
+                liquibaseService.rollbackToTag(tenant.getTenantId(), tenant.getSchemaName(), job.getRollbackTag());
+            } else {
+                liquibaseService.rollbackToChangeSet(tenant.getTenantId(), tenant.getSchemaName(),
+                        rollbackTarget(job, tenant));
+            }
+            schemaVersionService.markRolledBack(tenant.getSchemaName());
+            lazyMigrationService.forget(tenant.getSchemaName());
+            return;
+        }
+        if (job.getJobType() == FleetJobType.MIGRATE) {
+            liquibaseService.migrateSchema(tenant.getTenantId(), tenant.getSchemaName());
+            schemaVersionService.markUpToDate(tenant.getSchemaName(), job.getChangelogHash());
+            return;
+        }
+        throw new IllegalStateException("Unsupported fleet job type: " + job.getJobType());
+    }
+
+    /**
+     * Changeset a count rollback keeps on the tenant, fixed on the first attempt so a
+     * retried or resumed tenant isn't rolled back by the count again
+     */
+    private String rollbackTarget(FleetJob job, Tenant tenant) {
+        return checkpointStore.findRollbackTarget(job.getJobId(), tenant.getSchemaName()).orElseGet(() -> {
+            String target = liquibaseService.changeSetBeforeLast(tenant.getSchemaName(), job.getRollbackCount());
+            checkpointStore.recordRollbackTarget(job.getJobId(), tenant.getSchemaName(), target);
+            return target;
+        });
+    }
+
+    private void finish(String jobId, FleetJobStatus status, String error) {
+        jobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(status);
+            job.setFinishedAt(Instant.now());
+            job.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+            jobRepository.save(job);
+            log.info("Fleet job {} finished with status {}", jobId, status);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${realtygen.fleet.jobs.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (!runningHere.isEmpty()) {
+            jobRepository.heartbeat(nodeId, Instant.now());
+        }
+    }
+
+    /**
+     * Resume running jobs left behind by a dead node or by this node before a restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${realtygen.fleet.jobs.resume-check-interval-ms:60000}",
+            initialDelayString = "${realtygen.fleet.jobs.resume-check-interval-ms:60000}")
+    public void resumeOrphanedJobs() {
+        try {
+            Instant now = Instant.now();
+            Instant staleBefore = now.minusMillis(heartbeatLeaseMillis);
+            for (FleetJob job : jobRepository.findByStatusOrderByCreatedAt(FleetJobStatus.RUNNING)) {
+                if (runningHere.contains(job.getJobId()) || !canRunHere(job)) {
+                    continue;
+                }
+                if (jobRepository.claimStale(job.getJobId(), nodeId, now, staleBefore) == 1) {
+                    log.info("Resuming {} job {} previously owned by {}", job.getJobType(), job.getJobId(),
+                            job.getOwnerNode());
+                    submit(jobRepository.findById(job.getJobId()).orElse(job));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check for orphaned fleet jobs", e);
+        }
+    }
+
+    /**
+     * Migration and rollout jobs only run on nodes built from the changelog they were started with
+     */
+    private boolean canRunHere(FleetJob job) {
+        return job.getJobType() == FleetJobType.ROLLBACK
+                || schemaVersionService.currentChangeLogHash().equals(job.getChangelogHash());
+    }
+
+    /**
+     * Host name plus process id; set realtygen.node-id to a stable value so a
+     * restarted node resumes its own jobs without waiting for the heartbeat lease
+     */
+    static String defaultNodeId() {
+        long pid = ProcessHandle.current().pid();
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + pid;
+        } catch (Exception e) {
+            return "node-" + UUID.randomUUID().toString().substring(0, 8) + ":" + pid;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.SchemaMigrationCoordinator;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.MigrationMode;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Just-in-time tenant migration
+ * A tenant's schema version is checked on its first request after a deploy and
+ * migrated on the spot; concurrent requests for the same tenant wait on the same
+ * migration. A background sweeper migrates tenants that stay idle, so deploy-time
+ * cost scales with active tenants rather than the whole fleet.
+ */
+@Slf4j
+@Service
+public class LazyTenantMigrationService {
+
+    @Value("${realtygen.tenancy.migration.mode:eager}")
+    private MigrationMode migrationMode;
+
+    @Value("${realtygen.tenancy.migration.sweep-batch-size:20}")
+    private int sweepBatchSize;
+
+    @Value("${realtygen.tenancy.migration.sweep-concurrency:1}")
+    private int sweepConcurrency;
+
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final SchemaMigrationCoordinator migrationCoordinator;
+    private final TenantRepository tenantRepository;
+    private final TenantSchemaVersionService schemaVersionService;
+    private final BoundedTenantTaskRunner taskRunner;
+    private final TenantRegistry tenantRegistry;
+
+    /**
+     * Schemas confirmed at a changelog version by this node (schema name to changelog hash)
+     */
+    private final ConcurrentMap<String, String> confirmedSchemas = new ConcurrentHashMap<>();
+
+    public LazyTenantMigrationService(MultiTenantLiquibaseService liquibaseService,
+                                      SchemaMigrationCoordinator migrationCoordinator,
+                                      TenantRepository tenantRepository,
+                                      TenantSchemaVersionService schemaVersionService,
+                                      BoundedTenantTaskRunner taskRunner,
+                                      TenantRegistry tenantRegistry) {
+        this.liquibaseService = liquibaseService;
+        this.migrationCoordinator = migrationCoordinator;
+        this.tenantRepository = tenantRepository;
+        this.schemaVersionService = schemaVersionService;
+        this.taskRunner = taskRunner;
+        this.tenantRegistry = tenantRegistry;
+    }
+
+    public boolean isEnabled() {
+        return migrationMode == MigrationMode.LAZY;
+    }
+
+    /**
+     * Make sure the tenant's schema is at the current changelog before serving it
+     * After the first check this is a map lookup
+     *
+     * @param tenantId Tenant making the request
+     */
+    public void ensureMigrated(String tenantId) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Optional<Tenant> found = tenantRegistry.findByTenantId(tenantId);
+        if (found.isEmpty() || !found.get().getActive()) {
+            return;
+        }
+        ensureMigrated(found.get());
+    }
+
+    /**
+     * Same as {@link #ensureMigrated(String)} for an already resolved tenant
+     */
+    public void ensureMigrated(Tenant tenant) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (schemaVersionService.isPinned(tenant)) {
+            // Rolled back on purpose, served as it is until an explicit update
+            confirmedSchemas.remove(tenant.getSchemaName());
+            return;
+        }
+        String changelogHash = schemaVersionService.currentChangeLogHash();
+        if (changelogHash.equals(confirmedSchemas.get(tenant.getSchemaName()))) {
+            return;
+        }
+
+        if (!changelogHash.equals(tenant.getChangelogHash())) {
+            log.info("Tenant {} is behind the current changelog, migrating on first access", tenant.getTenantId());
+            liquibaseService.migrateSchema(tenant.getTenantId(), tenant.getSchemaName());
+            schemaVersionService.markUpToDate(tenant.getSchemaName(), changelogHash);
+        }
+        confirmedSchemas.put(tenant.getSchemaName(), changelogHash);
+    }
+
+    /**
+     * Drop this node's confirmation of a schema (after a rollback); other nodes drop theirs
+     * when the registry delivers the pinned tenant row
+     */
+    public void forget(String schemaName) {
+        confirmedSchemas.remove(schemaName);
+    }
+
+    /**
+     * Migrate a small batch of tenants that haven't been touched since the deploy
+     */
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.migration.sweep-interval-ms:60000}",
+            initialDelayString = "${realtygen.tenancy.migration.sweep-initial-delay-ms:300000}")
+    public void sweepIdleTenants() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            String changelogHash = schemaVersionService.currentChangeLogHash();
+            List<Tenant> stale = tenantRepository.findByActiveTrueOrderBySchemaName().stream()
+                    .filter(tenant -> !changelogHash.equals(tenant.getChangelogHash()))
+                    .filter(tenant -> !schemaVersionService.isPinned(tenant))
+                    .filter(tenant -> !migrationCoordinator.isInFlight(tenant.getSchemaName()))
+                    .limit(sweepBatchSize)
+                    .toList();
+            if (stale.isEmpty()) {
+                return;
+            }
+
+            taskRunner.run("lazy-migration-sweep", stale, sweepConcurrency, this::ensureMigrated);
+        } catch (Exception e) {
+            log.warn("Idle tenant migration sweep failed", e);
+        }
+    }
+}
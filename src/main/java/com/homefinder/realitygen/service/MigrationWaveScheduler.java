@@ -0,0 +1,237 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.dto.RolloutReport;
+import com.homefinder.realitygen.dto.RolloutWaveReport;
+import com.homefinder.realitygen.dto.TenantTaskResult;
+import com.homefinder.realitygen.entity.Tenant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Staged rollout of the current changelog over the fleet, run as a fleet job
+ * A canary slice migrates first; each following wave grows by the growth factor
+ * while error rate and p95 duration stay inside their budgets. Each shard's concurrency
+ * is adjusted between waves to keep the active backends on that shard near the target load.
+ */
+@Slf4j
+@Service
+public class MigrationWaveScheduler {
+
+    /**
+     * Tenant ids always placed in the canary wave, comma separated
+     */
+    @Value("${realtygen.fleet.rollout.canary-tenants:}")
+    private String canaryTenants;
+
+    @Value("${realtygen.fleet.rollout.canary-size:10}")
+    private int canarySize;
+
+    @Value("${realtygen.fleet.rollout.growth-factor:4}")
+    private int growthFactor;
+
+    @Value("${realtygen.fleet.rollout.max-wave-size:1000}")
+    private int maxWaveSize;
+
+    /**
+     * Highest failed/attempted ratio a wave may have before the rollout halts
+     */
+    @Value("${realtygen.fleet.rollout.max-error-rate:0.02}")
+    private double maxErrorRate;
+
+    /**
+     * Highest p95 per-tenant migration time a wave may have before the rollout halts
+     */
+    @Value("${realtygen.fleet.rollout.max-p95-millis:60000}")
+    private long maxP95Millis;
+
+    /**
+     * Target number of active backends on each shard's database, 0 disables load throttling
+     */
+    @Value("${realtygen.fleet.rollout.target-active-connections:0}")
+    private int targetActiveConnections;
+
+    @Value("${realtygen.fleet.rollout.wave-pause-ms:5000}")
+    private long wavePauseMillis;
+
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final BoundedTenantTaskRunner taskRunner;
+    private final TenantSchemaVersionService schemaVersionService;
+    private final TenantRoutingDataSource routingDataSource;
+
+    public MigrationWaveScheduler(MultiTenantLiquibaseService liquibaseService,
+                                  BoundedTenantTaskRunner taskRunner,
+                                  TenantSchemaVersionService schemaVersionService,
+                                  TenantRoutingDataSource routingDataSource) {
+        this.liquibaseService = liquibaseService;
+        this.taskRunner = taskRunner;
+        this.schemaVersionService = schemaVersionService;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Roll the changelog out to the given stale tenants in waves
+     *
+     * @param tenants Tenants still to migrate
+     * @param changelogHash Changelog version stamped on migrated tenants
+     * @param maxConcurrency Most tenants of one shard migrated at the same time
+     * @param onResult Called as each tenant finishes (e.g. to checkpoint progress)
+     * @return Per-wave measurements, and the halt reason if a budget was exceeded
+     */
+    public RolloutReport rollout(List<Tenant> tenants, String changelogHash, int maxConcurrency,
+                                 Consumer<TenantTaskResult> onResult) {
+        long start = System.nanoTime();
+        List<Tenant> pending = orderCanariesFirst(tenants);
+
+        int initialConcurrency = Math.min(Math.max(1, maxConcurrency), Math.max(1, canarySize));
+        Map<String, Integer> concurrencyByShard = new LinkedHashMap<>();
+        int waveSize = Math.max(1, canarySize);
+        int offset = 0;
+        int migrated = 0;
+        List<RolloutWaveReport> waves = new ArrayList<>();
+        List<TenantTaskResult> failures = new ArrayList<>();
+        String haltReason = null;
+
+        log.info("Starting rollout of changelog {} to {} stale tenants", changelogHash, pending.size());
+
+        while (offset < pending.size()) {
+            List<Tenant> wave = pending.subList(offset, Math.min(pending.size(), offset + waveSize));
+
+            Map<String, Integer> waveConcurrency = new LinkedHashMap<>();
+            Map<String, Integer> activeConnections = new LinkedHashMap<>();
+            for (String shardId : shardsOf(wave)) {
+                int active = activeConnections(shardId);
+                int concurrency = throttle(shardId, concurrencyByShard.getOrDefault(shardId, initialConcurrency),
+                        maxConcurrency, active);
+                concurrencyByShard.put(shardId, concurrency);
+                waveConcurrency.put(shardId, concurrency);
+                activeConnections.put(shardId, active);
+            }
+
+            long waveStart = System.nanoTime();
+            List<TenantTaskResult> results = taskRunner.run("rollout-wave-" + (waves.size() + 1), wave,
+                    waveConcurrency::get, tenant -> {
+                        liquibaseService.migrateSchema(tenant.getTenantId(), tenant.getSchemaName());
+                        schemaVersionService.markUpToDate(tenant.getSchemaName(), changelogHash);
+                    }, onResult);
+            offset += wave.size();
+
+            List<TenantTaskResult> waveFailures = results.stream().filter(result -> !result.isSuccess()).toList();
+            failures.addAll(waveFailures);
+            migrated += results.size() - waveFailures.size();
+
+            RolloutWaveReport report = new RolloutWaveReport(waves.size() + 1, wave.size(),
+                    Collections.max(waveConcurrency.values()), waveFailures.size(),
+                    (double) waveFailures.size() / wave.size(), p95(results),
+                    (System.nanoTime() - waveStart) / 1_000_000, Collections.max(activeConnections.values()),
+                    waveConcurrency, activeConnections);
+            waves.add(report);
+            log.info("Rollout wave {}: {} tenants, {} failed, p95 {} ms, concurrency per shard {}",
+                    report.getWave(), report.getTenants(), report.getFailed(), report.getP95Millis(), waveConcurrency);
+
+            haltReason = checkBudgets(report);
+            if (haltReason != null) {
+                log.error("Halting rollout after wave {}: {}", report.getWave(), haltReason);
+                break;
+            }
+
+            waveSize = Math.min(maxWaveSize, waveSize * Math.max(1, growthFactor));
+            if (offset < pending.size()) {
+                pause();
+            }
+        }
+
+        return new RolloutReport(haltReason != null, haltReason, pending.size(), migrated, failures.size(),
+                pending.size() - offset, (System.nanoTime() - start) / 1_000_000, waves, failures);
+    }
+
+    private List<Tenant> orderCanariesFirst(List<Tenant> tenants) {
+        Set<String> canaries = Arrays.stream(canaryTenants.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toSet());
+        return tenants.stream()
+                .sorted(Comparator.comparing((Tenant tenant) -> !canaries.contains(tenant.getTenantId())))
+                .toList();
+    }
+
+    private static Set<String> shardsOf(List<Tenant> tenants) {
+        return tenants.stream()
+                .map(tenant -> tenant.getShardId() != null ? tenant.getShardId() : Tenant.PRIMARY_SHARD)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private String checkBudgets(RolloutWaveReport wave) {
+        if (wave.getErrorRate() > maxErrorRate) {
+            return String.format("error rate %.3f exceeds budget %.3f", wave.getErrorRate(), maxErrorRate);
+        }
+        if (wave.getP95Millis() > maxP95Millis) {
+            return "p95 " + wave.getP95Millis() + " ms exceeds budget " + maxP95Millis + " ms";
+        }
+        return null;
+    }
+
+    /**
+     * Halve a shard's concurrency while its database is above the target load, grow it back when well below
+     */
+    private int throttle(String shardId, int concurrency, int maxConcurrency, int activeConnections) {
+        if (targetActiveConnections <= 0) {
+            return maxConcurrency;
+        }
+        if (activeConnections > targetActiveConnections) {
+            int reduced = Math.max(1, concurrency / 2);
+            log.info("Shard {} at {} active connections (target {}), reducing its concurrency to {}",
+                    shardId, activeConnections, targetActiveConnections, reduced);
+            return reduced;
+        }
+        if (activeConnections < targetActiveConnections / 2) {
+            return Math.min(maxConcurrency, concurrency * 2);
+        }
+        return concurrency;
+    }
+
+    /**
+     * Active backends on a shard's database, other than this query's
+     */
+    private int activeConnections(String shardId) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(routingDataSource.shardDataSource(shardId));
+        Integer active = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_stat_activity "
+                        + "WHERE datname = current_database() AND state = 'active' AND pid <> pg_backend_pid()",
+                Integer.class);
+        return active != null ? active : 0;
+    }
+
+    private static long p95(List<TenantTaskResult> results) {
+        if (results.isEmpty()) {
+            return 0;
+        }
+        long[] durations = results.stream().mapToLong(TenantTaskResult::getDurationMillis).sorted().toArray();
+        int index = (int) Math.ceil(durations.length * 0.95) - 1;
+        return durations[Math.max(0, index)];
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(wavePauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rollout interrupted", e);
+        }
+    }
+}
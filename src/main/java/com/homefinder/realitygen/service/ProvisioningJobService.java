@@ -0,0 +1,134 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.dto.ProvisioningJob;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.ProvisioningJobState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs tenant provisioning on the provisioning executor and tracks job status
+ * Jobs are kept in memory and evicted a while after they finish
+ */
+@Slf4j
+@Service
+public class ProvisioningJobService {
+
+    @Value("${realtygen.tenancy.provisioning.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private final TenantProvisioningService provisioningService;
+    private final TaskExecutor provisioningExecutor;
+
+    private final Map<String, ProvisioningJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Id of the queued or running job of each tenant
+     */
+    private final Map<String, String> pendingByTenant = new ConcurrentHashMap<>();
+
+    public ProvisioningJobService(TenantProvisioningService provisioningService,
+                                  @Qualifier("provisioningExecutor") TaskExecutor provisioningExecutor) {
+        this.provisioningService = provisioningService;
+        this.provisioningExecutor = provisioningExecutor;
+    }
+
+    /**
+     * Queue a provisioning job, or return the pending job already queued for this tenant
+     *
+     * @throws TaskRejectedException if the provisioning queue is full
+     */
+    public ProvisioningJob submit(String tenantId, String tenantName) {
+        ProvisioningJob job = ProvisioningJob.builder()
+                .jobId(UUID.randomUUID().toString())
+                .tenantId(tenantId)
+                .tenantName(tenantName)
+                .state(ProvisioningJobState.QUEUED)
+                .submittedAt(Instant.now())
+                .build();
+        jobs.put(job.getJobId(), job);
+
+        // Claimed atomically, so concurrent submits for a tenant share one job
+        String pendingId = pendingByTenant.putIfAbsent(tenantId, job.getJobId());
+        while (pendingId != null) {
+            ProvisioningJob pending = jobs.get(pendingId);
+            if (pending != null) {
+                jobs.remove(job.getJobId());
+                return pending;
+            }
+            pendingByTenant.remove(tenantId, pendingId);
+            pendingId = pendingByTenant.putIfAbsent(tenantId, job.getJobId());
+        }
+
+        try {
+            provisioningExecutor.execute(() -> run(job.getJobId()));
+        } catch (TaskRejectedException e) {
+            pendingByTenant.remove(tenantId, job.getJobId());
+            jobs.remove(job.getJobId());
+            log.warn("Provisioning queue is full, rejecting tenant {}", tenantId);
+            throw e;
+        }
+
+        log.info("Queued provisioning job {} for tenant {}", job.getJobId(), tenantId);
+        return job;
+    }
+
+    public Optional<ProvisioningJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(String jobId) {
+        ProvisioningJob job = jobs.computeIfPresent(jobId, (id, queued) -> queued.toBuilder()
+                .state(ProvisioningJobState.RUNNING)
+                .startedAt(Instant.now())
+                .build());
+        if (job == null) {
+            return;
+        }
+
+        try {
+            Tenant tenant = provisioningService.provisionNewTenant(job.getTenantId(), job.getTenantName());
+            finish(jobId, ProvisioningJobState.SUCCEEDED, tenant.getSchemaName(), null);
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            finish(jobId, ProvisioningJobState.FAILED, null, cause.getMessage());
+        }
+    }
+
+    private void finish(String jobId, ProvisioningJobState state, String schemaName, String error) {
+        ProvisioningJob finished = jobs.computeIfPresent(jobId, (id, running) -> {
+            Instant finishedAt = Instant.now();
+            return running.toBuilder()
+                    .state(state)
+                    .schemaName(schemaName)
+                    .finishedAt(finishedAt)
+                    .durationMillis(Duration.between(running.getStartedAt(), finishedAt).toMillis())
+                    .error(error)
+                    .build();
+        });
+        if (finished != null) {
+            pendingByTenant.remove(finished.getTenantId(), jobId);
+        }
+    }
+
+    /**
+     * Drop finished jobs older than the retention window
+     */
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.provisioning.job-eviction-interval-ms:300000}")
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobRetentionMinutes));
+        jobs.values().removeIf(job -> job.getState().isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+}
@@ -0,0 +1,373 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.dto.TenantArchiveSummary;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams tenant schemas in and out of zip archives with PostgreSQL COPY
+ * Each table is copied in binary format straight between the connection and
+ * the archive stream, so rows never materialize in the heap. An archive holds a
+ * manifest (tenant, changelog version, tables and their columns in foreign-key
+ * order) followed by one entry per table.
+ */
+@Slf4j
+@Service
+public class TenantArchiveService {
+
+    static final String MANIFEST_ENTRY = "manifest.properties";
+
+    private static final String DATA_ENTRY_PREFIX = "data/";
+
+    private static final int ARCHIVE_FORMAT_VERSION = 1;
+
+    private final TenantRoutingDataSource dataSource;
+    private final TenantRepository tenantRepository;
+    private final TenantProvisioningService provisioningService;
+    private final TenantSchemaVersionService schemaVersionService;
+
+    public TenantArchiveService(TenantRoutingDataSource dataSource,
+                                TenantRepository tenantRepository,
+                                TenantProvisioningService provisioningService,
+                                TenantSchemaVersionService schemaVersionService) {
+        this.dataSource = dataSource;
+        this.tenantRepository = tenantRepository;
+        this.provisioningService = provisioningService;
+        this.schemaVersionService = schemaVersionService;
+    }
+
+    /**
+     * Export every table of a tenant schema into a zip archive
+     * The tables are read in one repeatable-read snapshot, so the archive is consistent
+     *
+     * @param tenantId Tenant to export
+     * @param out Archive destination, not closed
+     */
+    public TenantArchiveSummary exportTenant(String tenantId, OutputStream out) {
+        return exportSchema(requireTenant(tenantId), out);
+    }
+
+    public Tenant requireTenant(String tenantId) {
+        return tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+    }
+
+    /**
+     * Same as {@link #exportTenant(String, OutputStream)} for an already resolved tenant
+     */
+    public TenantArchiveSummary exportSchema(Tenant tenant, OutputStream out) {
+        String schemaName = tenant.getSchemaName();
+        log.info("Exporting tenant {} from schema {}", tenant.getTenantId(), schemaName);
+        long start = System.nanoTime();
+
+        try (Connection connection = dataSource.getSchemaConnection(schemaName)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+                }
+
+                List<String> tables = tablesInDependencyOrder(connection, schemaName);
+                Map<String, List<String>> columns = new LinkedHashMap<>();
+                for (String table : tables) {
+                    columns.put(table, copyableColumns(connection, schemaName, table));
+                }
+
+                // Finished but not closed, the caller owns the stream
+                ZipOutputStream zip = new ZipOutputStream(out);
+                zip.setLevel(Deflater.BEST_SPEED);
+                writeManifest(zip, tenant, columns);
+
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                Map<String, Long> tableRows = new LinkedHashMap<>();
+                for (Map.Entry<String, List<String>> table : columns.entrySet()) {
+                    zip.putNextEntry(new ZipEntry(DATA_ENTRY_PREFIX + table.getKey()));
+                    long rows = copyManager.copyOut("COPY " + qualified(schemaName, table.getKey())
+                            + " (" + columnList(table.getValue()) + ") TO STDOUT (FORMAT binary)", zip);
+                    zip.closeEntry();
+                    tableRows.put(table.getKey(), rows);
+                }
+                zip.finish();
+                connection.commit();
+
+                long totalRows = tableRows.values().stream().mapToLong(Long::longValue).sum();
+                long durationMillis = (System.nanoTime() - start) / 1_000_000;
+                log.info("Exported {} rows from {} tables of schema {} in {} ms",
+                        totalRows, tableRows.size(), schemaName, durationMillis);
+                return new TenantArchiveSummary(tenant.getTenantId(), schemaName, tenant.getChangelogHash(),
+                        tableRows, totalRows, durationMillis);
+
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+
+        } catch (Exception e) {
+            log.error("Failed to export tenant {} from schema {}", tenant.getTenantId(), schemaName, e);
+            throw new RuntimeException("Export failed for tenant: " + tenant.getTenantId(), e);
+        }
+    }
+
+    /**
+     * Import an archive into a tenant, provisioning it first when it doesn't exist
+     * The tenant's schema must be at the changelog version the archive was taken
+     * from and its tables must be empty; all tables are loaded in one transaction
+     *
+     * @param tenantId Tenant to import into
+     * @param tenantName Display name used if the tenant has to be provisioned
+     * @param archive Archive produced by an export, read once from start to end
+     */
+    public TenantArchiveSummary importTenant(String tenantId, String tenantName, InputStream archive) {
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseGet(() -> provisioningService.provisionNewTenant(tenantId, tenantName));
+        String schemaName = tenant.getSchemaName();
+        log.info("Importing archive into tenant {} schema {}", tenantId, schemaName);
+        long start = System.nanoTime();
+
+        try (Connection connection = dataSource.getSchemaConnection(schemaName)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                ZipInputStream zip = new ZipInputStream(archive);
+                Properties manifest = readManifest(zip);
+                verifyCompatible(manifest, tenant);
+
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                Map<String, Long> tableRows = new LinkedHashMap<>();
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.getName().startsWith(DATA_ENTRY_PREFIX)) {
+                        continue;
+                    }
+                    String table = entry.getName().substring(DATA_ENTRY_PREFIX.length());
+                    String columns = manifest.getProperty("columns." + table);
+                    if (columns == null) {
+                        throw new IllegalArgumentException("Archive has data for undeclared table " + table);
+                    }
+                    requireEmpty(connection, schemaName, table);
+                    long rows = copyManager.copyIn("COPY " + qualified(schemaName, table)
+                            + " (" + columnList(List.of(columns.split(","))) + ") FROM STDIN (FORMAT binary)", zip);
+                    tableRows.put(table, rows);
+                }
+
+                alignSequences(connection, schemaName);
+                connection.commit();
+
+                long totalRows = tableRows.values().stream().mapToLong(Long::longValue).sum();
+                long durationMillis = (System.nanoTime() - start) / 1_000_000;
+                log.info("Imported {} rows into {} tables of schema {} in {} ms",
+                        totalRows, tableRows.size(), schemaName, durationMillis);
+                return new TenantArchiveSummary(tenantId, schemaName, manifest.getProperty("changelogHash"),
+                        tableRows, totalRows, durationMillis);
+
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to import archive into tenant {} schema {}", tenantId, schemaName, e);
+            throw new RuntimeException("Import failed for tenant: " + tenantId, e);
+        }
+    }
+
+    private void writeManifest(ZipOutputStream zip, Tenant tenant, Map<String, List<String>> columns)
+            throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("format", String.valueOf(ARCHIVE_FORMAT_VERSION));
+        manifest.setProperty("tenantId", tenant.getTenantId());
+        manifest.setProperty("schemaName", tenant.getSchemaName());
+        manifest.setProperty("changelogHash", String.valueOf(tenant.getChangelogHash()));
+        manifest.setProperty("exportedAt", Instant.now().toString());
+        manifest.setProperty("tables", String.join(",", columns.keySet()));
+        columns.forEach((table, tableColumns) -> manifest.setProperty("columns." + table, String.join(",", tableColumns)));
+
+        StringWriter text = new StringWriter();
+        manifest.store(text, "Tenant archive");
+        zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+        zip.write(text.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private Properties readManifest(ZipInputStream zip) throws IOException {
+        ZipEntry first = zip.getNextEntry();
+        if (first == null || !MANIFEST_ENTRY.equals(first.getName())) {
+            throw new IllegalArgumentException("Not a tenant archive: " + MANIFEST_ENTRY + " must be the first entry");
+        }
+        Properties manifest = new Properties();
+        manifest.load(new StringReader(new String(zip.readAllBytes(), StandardCharsets.UTF_8)));
+        return manifest;
+    }
+
+    /**
+     * Binary COPY needs identical column types, so source and target must share a changelog version
+     */
+    private void verifyCompatible(Properties manifest, Tenant tenant) {
+        if (!String.valueOf(ARCHIVE_FORMAT_VERSION).equals(manifest.getProperty("format"))) {
+            throw new IllegalArgumentException("Unsupported archive format " + manifest.getProperty("format"));
+        }
+        String archiveHash = manifest.getProperty("changelogHash");
+        if (!schemaVersionService.isUpToDate(tenant) || !schemaVersionService.currentChangeLogHash().equals(archiveHash)) {
+            throw new IllegalStateException("Archive was taken at changelog " + archiveHash
+                    + " but schema " + tenant.getSchemaName() + " is at " + tenant.getChangelogHash()
+                    + "; migrate both sides to the same version first");
+        }
+    }
+
+    private void requireEmpty(Connection connection, String schemaName, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM " + qualified(schemaName, table) + ")")) {
+            if (rs.next() && rs.getBoolean(1)) {
+                throw new IllegalStateException("Table " + schemaName + "." + table + " already has rows");
+            }
+        }
+    }
+
+    /**
+     * Tenant tables with referenced tables first, so an import satisfies foreign keys table by table
+     * (Liquibase bookkeeping tables are left out, the target schema has its own)
+     */
+    static List<String> tablesInDependencyOrder(Connection connection, String schemaName) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relkind = 'r' "
+                        + "AND c.relname NOT IN ('databasechangelog', 'databasechangeloglock') ORDER BY c.relname")) {
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+
+        Map<String, Set<String>> dependsOn = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT c.relname, r.relname FROM pg_constraint con "
+                        + "JOIN pg_class c ON c.oid = con.conrelid JOIN pg_class r ON r.oid = con.confrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE con.contype = 'f' AND n.nspname = ? AND r.relnamespace = c.relnamespace "
+                        + "AND c.oid <> r.oid")) {
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    dependsOn.computeIfAbsent(rs.getString(1), key -> new HashSet<>()).add(rs.getString(2));
+                }
+            }
+        }
+
+        List<String> ordered = new ArrayList<>();
+        Set<String> placed = new HashSet<>();
+        while (ordered.size() < tables.size()) {
+            boolean progress = false;
+            for (String table : tables) {
+                if (!placed.contains(table) && placed.containsAll(dependsOn.getOrDefault(table, Set.of()))) {
+                    ordered.add(table);
+                    placed.add(table);
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                throw new IllegalStateException("Schema " + schemaName
+                        + " has circular foreign keys between tables; it cannot be copied table by table");
+            }
+        }
+        return ordered;
+    }
+
+    static List<String> copyableColumns(Connection connection, String schemaName, String table) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT a.attname FROM pg_attribute a JOIN pg_class c ON c.oid = a.attrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relname = ? AND a.attnum > 0 AND NOT a.attisdropped "
+                        + "AND a.attgenerated = '' ORDER BY a.attnum")) {
+            ps.setString(1, schemaName);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Move serial and identity sequences past the imported keys
+     */
+    static void alignSequences(Connection connection, String schemaName) throws SQLException {
+        List<String[]> columns = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT c.relname, a.attname, pg_get_serial_sequence(quote_ident(n.nspname) || '.' || quote_ident(c.relname), a.attname) "
+                        + "FROM pg_attribute a JOIN pg_class c ON c.oid = a.attrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relkind = 'r' AND a.attnum > 0 AND NOT a.attisdropped")) {
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString(3) != null) {
+                        columns.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3)});
+                    }
+                }
+            }
+        }
+
+        for (String[] column : columns) {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT setval(?::regclass, "
+                    + "COALESCE((SELECT MAX(" + quote(column[1]) + ") FROM " + qualified(schemaName, column[0])
+                    + "), 0) + 1, false)")) {
+                ps.setString(1, column[2]);
+                ps.execute();
+            }
+        }
+    }
+
+    static String qualified(String schemaName, String table) {
+        return quote(schemaName) + "." + quote(table);
+    }
+
+    static String columnList(List<String> columns) {
+        return String.join(", ", columns.stream().map(TenantArchiveService::quote).toList());
+    }
+
+    static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,240 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.TeardownStatus;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.homefinder.realitygen.service.TenantArchiveService.quote;
+
+/**
+ * Tenant deprovisioning
+ * A deprovisioned tenant is marked inactive immediately; its schema is archived
+ * and dropped later by an off-peak background job, a few tenants per run and one
+ * table per statement, so teardown never holds heavy catalog locks for long
+ */
+@Slf4j
+@Service
+public class TenantDeprovisioningService {
+
+    /**
+     * Second advisory lock key for the teardown job, so one node at a time tears schemas down
+     */
+    private static final int TEARDOWN_LOCK_KEY = 0x54524457;
+
+    /**
+     * Deactivated tenants can be reactivated during this period, their schema is untouched
+     */
+    @Value("${realtygen.tenancy.teardown.grace-period-ms:86400000}")
+    private long gracePeriodMillis;
+
+    @Value("${realtygen.tenancy.teardown.batch-size:5}")
+    private int batchSize;
+
+    @Value("${realtygen.tenancy.teardown.drop-pause-ms:200}")
+    private long dropPauseMillis;
+
+    @Value("${realtygen.tenancy.teardown.lock-timeout-ms:5000}")
+    private long lockTimeoutMillis;
+
+    @Value("${realtygen.tenancy.teardown.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${realtygen.tenancy.teardown.archive.directory:tenant-archives}")
+    private String archiveDirectory;
+
+    private final TenantRepository tenantRepository;
+    private final TenantArchiveService archiveService;
+    private final TenantRoutingDataSource dataSource;
+
+    public TenantDeprovisioningService(TenantRepository tenantRepository,
+                                       TenantArchiveService archiveService,
+                                       TenantRoutingDataSource dataSource) {
+        this.tenantRepository = tenantRepository;
+        this.archiveService = archiveService;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Deactivate a tenant and queue its schema for teardown
+     *
+     * @param tenantId Tenant to deprovision
+     * @return The deactivated tenant
+     */
+    public Tenant deprovision(String tenantId) {
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+        if (tenant.getTeardownStatus() != null) {
+            return tenant;
+        }
+
+        tenant.setActive(false);
+        tenant.setDeactivatedAt(Instant.now());
+        tenant.setTeardownStatus(TeardownStatus.PENDING);
+        tenant = tenantRepository.save(tenant);
+        log.info("Deprovisioned tenant {}, schema {} queued for teardown", tenantId, tenant.getSchemaName());
+        return tenant;
+    }
+
+    /**
+     * Undo a deprovisioning whose schema hasn't been touched yet
+     *
+     * @param tenantId Tenant to reactivate
+     * @return The reactivated tenant
+     */
+    public Tenant reactivate(String tenantId) {
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+        if (tenant.getTeardownStatus() == null) {
+            return tenant;
+        }
+        // Past the grace period the teardown job may already be working on the schema
+        if (tenant.getTeardownStatus() != TeardownStatus.PENDING
+                || tenant.getDeactivatedAt().isBefore(Instant.now().minusMillis(gracePeriodMillis))) {
+            throw new IllegalStateException("Schema of tenant " + tenantId + " is already being torn down");
+        }
+
+        tenant.setActive(true);
+        tenant.setDeactivatedAt(null);
+        tenant.setTeardownStatus(null);
+        tenant = tenantRepository.save(tenant);
+        log.info("Reactivated tenant {}", tenantId);
+        return tenant;
+    }
+
+    /**
+     * Archive and drop a small batch of deprovisioned schemas, off-peak only
+     */
+    @Scheduled(cron = "${realtygen.tenancy.teardown.cron:0 */5 1-5 * * *}",
+            zone = "${realtygen.tenancy.teardown.zone:UTC}")
+    public void tearDownDeprovisionedTenants() {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!tryTeardownLock(connection)) {
+                log.debug("Another node is tearing down tenant schemas");
+                return;
+            }
+            try {
+                List<Tenant> tenants = tenantRepository.findByTeardownStatusInAndDeactivatedAtBeforeOrderByDeactivatedAt(
+                        EnumSet.of(TeardownStatus.PENDING, TeardownStatus.ARCHIVED, TeardownStatus.FAILED),
+                        Instant.now().minusMillis(gracePeriodMillis),
+                        Limit.of(batchSize));
+                for (Tenant tenant : tenants) {
+                    tearDown(tenant);
+                }
+            } finally {
+                releaseTeardownLock(connection);
+            }
+        } catch (Exception e) {
+            log.warn("Tenant teardown run failed", e);
+        }
+    }
+
+    private void tearDown(Tenant tenant) {
+        String schemaName = tenant.getSchemaName();
+        try {
+            if (archiveEnabled && tenant.getArchiveLocation() == null) {
+                tenant.setArchiveLocation(archive(tenant));
+                tenant.setTeardownStatus(TeardownStatus.ARCHIVED);
+                tenant = tenantRepository.save(tenant);
+            }
+
+            dropSchema(schemaName);
+            tenant.setTeardownStatus(TeardownStatus.DROPPED);
+            tenantRepository.save(tenant);
+            log.info("Tore down schema {} of tenant {}", schemaName, tenant.getTenantId());
+
+        } catch (Exception e) {
+            log.error("Failed to tear down schema {} of tenant {}", schemaName, tenant.getTenantId(), e);
+            tenant.setTeardownStatus(TeardownStatus.FAILED);
+            tenantRepository.save(tenant);
+        }
+    }
+
+    private String archive(Tenant tenant) throws Exception {
+        Path directory = Path.of(archiveDirectory);
+        Files.createDirectories(directory);
+        Path file = directory.resolve(tenant.getSchemaName() + "-" + System.currentTimeMillis() + ".zip");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            archiveService.exportSchema(tenant, out);
+        }
+        return file.toAbsolutePath().toString();
+    }
+
+    /**
+     * Drop the tables one statement at a time, pausing in between, then the (by then small) schema
+     * (on the schema's shard; the teardown lock stays on the primary)
+     */
+    private void dropSchema(String schemaName) throws Exception {
+        try (Connection connection = dataSource.getSchemaConnection(schemaName)) {
+            dropSchema(connection, schemaName);
+        }
+    }
+
+    private void dropSchema(Connection connection, String schemaName) throws Exception {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relkind IN ('r', 'p') ORDER BY c.relname")) {
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            // Give up on a table rather than queue behind (and block) other sessions
+            stmt.execute("SET lock_timeout = " + lockTimeoutMillis);
+            try {
+                for (String table : tables) {
+                    stmt.execute("DROP TABLE IF EXISTS " + quote(schemaName) + "." + quote(table) + " CASCADE");
+                    Thread.sleep(dropPauseMillis);
+                }
+                stmt.execute("DROP SCHEMA IF EXISTS " + quote(schemaName) + " CASCADE");
+            } finally {
+                stmt.execute("RESET lock_timeout");
+            }
+        }
+    }
+
+    private boolean tryTeardownLock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+            ps.setInt(1, MultiTenantLiquibaseService.ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, TEARDOWN_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void releaseTeardownLock(Connection connection) {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            ps.setInt(1, MultiTenantLiquibaseService.ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, TEARDOWN_LOCK_KEY);
+            ps.execute();
+        } catch (SQLException e) {
+            log.warn("Failed to release tenant teardown lock", e);
+        }
+    }
+}
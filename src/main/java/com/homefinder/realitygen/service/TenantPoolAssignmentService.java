@@ -0,0 +1,121 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.ReadReplicaPools;
+import com.homefinder.realitygen.config.TenantConnectionBulkhead;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.PoolTier;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the tenant pool router in line with the pool tiers in public.tenants
+ * Assignments are loaded at startup and refreshed periodically (picking up
+ * changes made on other nodes); changes made here apply on this node right away
+ */
+@Slf4j
+@Service
+public class TenantPoolAssignmentService {
+
+    @Value("${realtygen.datasource.routing.dedicated.default-size:5}")
+    private int defaultDedicatedPoolSize;
+
+    @Value("${realtygen.datasource.routing.dedicated.max-size:20}")
+    private int maxDedicatedPoolSize;
+
+    @Value("${realtygen.datasource.routing.dedicated.idle-evict-ms:600000}")
+    private long idleEvictMillis;
+
+    private final TenantRepository tenantRepository;
+    private final TenantRoutingDataSource routingDataSource;
+
+    public TenantPoolAssignmentService(TenantRepository tenantRepository,
+                                       TenantRoutingDataSource routingDataSource) {
+        this.tenantRepository = tenantRepository;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Move a tenant to the shared pool or to a dedicated pool of the given size
+     *
+     * @param tenantId Tenant to reassign
+     * @param tier New pool tier
+     * @param poolSize Dedicated pool size, null for the configured default
+     * @return The updated tenant
+     */
+    public Tenant changePoolTier(String tenantId, PoolTier tier, Integer poolSize) {
+        if (poolSize != null && (poolSize < 1 || poolSize > maxDedicatedPoolSize)) {
+            throw new IllegalArgumentException("Dedicated pool size must be between 1 and " + maxDedicatedPoolSize);
+        }
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+
+        tenant.setPoolTier(tier);
+        tenant.setDedicatedPoolSize(tier == PoolTier.DEDICATED ? poolSize : null);
+        tenant = tenantRepository.save(tenant);
+
+        if (tier == PoolTier.DEDICATED) {
+            routingDataSource.assign(tenant.getSchemaName(), dedicatedPoolSize(tenant));
+        } else {
+            routingDataSource.unassign(tenant.getSchemaName());
+        }
+        log.info("Tenant {} now uses the {} pool", tenantId, tier.name().toLowerCase());
+        return tenant;
+    }
+
+    public Map<String, Integer> openPools() {
+        return routingDataSource.openPools();
+    }
+
+    /**
+     * Connections held and callers queued per tenant on the shared pool
+     */
+    public Map<String, TenantConnectionBulkhead.TenantAdmission> sharedPoolAdmissions() {
+        TenantConnectionBulkhead bulkhead = routingDataSource.getBulkhead();
+        return bulkhead != null ? bulkhead.snapshot() : Map.of();
+    }
+
+    /**
+     * Last measured replication lag by replica pool (ms, -1 when unreachable)
+     */
+    public Map<String, Long> replicaLag() {
+        ReadReplicaPools replicas = routingDataSource.getReplicas();
+        return replicas != null ? replicas.lag() : Map.of();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${realtygen.datasource.routing.refresh-interval-ms:60000}",
+            initialDelayString = "${realtygen.datasource.routing.refresh-interval-ms:60000}")
+    public void refreshAssignments() {
+        try {
+            Map<String, Integer> dedicated = new HashMap<>();
+            for (Tenant tenant : tenantRepository.findByPoolTierAndActiveTrue(PoolTier.DEDICATED)) {
+                dedicated.put(tenant.getSchemaName(), dedicatedPoolSize(tenant));
+            }
+            routingDataSource.updateAssignments(dedicated);
+        } catch (Exception e) {
+            log.warn("Failed to refresh tenant pool assignments", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtygen.datasource.routing.evict-check-interval-ms:60000}")
+    public void evictIdlePools() {
+        int closed = routingDataSource.evictIdlePools(idleEvictMillis);
+        if (closed > 0) {
+            log.info("Closed {} idle tenant pools", closed);
+        }
+    }
+
+    private int dedicatedPoolSize(Tenant tenant) {
+        Integer size = tenant.getDedicatedPoolSize();
+        return size != null ? Math.min(size, maxDedicatedPoolSize) : defaultDedicatedPoolSize;
+    }
+}
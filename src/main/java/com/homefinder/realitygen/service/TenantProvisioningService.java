@@ -1,9 +1,37 @@
 package com.homefinder.realitygen.service;
 
 import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.dto.BulkProvisioningReport;
+import com.homefinder.realitygen.dto.TenantProvisioningRequest;
+import com.homefinder.realitygen.dto.TenantTaskResult;
 import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.repository.TenantRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.homefinder.realitygen.service.TenantArchiveService.quote;
 
 /**
  * Service to handle tenant provisioning
@@ -12,24 +40,71 @@ import org.springframework.stereotype.Service;
 @Service
 public class TenantProvisioningService {
 
+    private static final String INSERT_TENANT_SQL = "INSERT INTO public.tenants (tenant_id, tenant_name, "
+            + "schema_name, active, changelog_hash, schema_migrated_at, shard_id) VALUES (?, ?, ?, TRUE, ?, ?, ?)";
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    /**
+     * Parallel schema builds during bulk provisioning, 0 sizes it from the connection pool
+     */
+    @Value("${realtygen.tenancy.bulk.concurrency:0}")
+    private int bulkConcurrency;
+
     private final MultiTenantLiquibaseService liquibaseService;
+    private final TenantRepository tenantRepository;
+    private final TenantSchemaVersionService schemaVersionService;
+    private final TenantSchemaBuilder schemaBuilder;
+    private final TenantSchemaPoolService schemaPoolService;
+    private final BoundedTenantTaskRunner taskRunner;
+    private final JdbcTemplate jdbcTemplate;
+    private final TenantShardService shardService;
+    private final LazyTenantMigrationService lazyMigrationService;
+    private final TenantRoutingDataSource routingDataSource;
+    private final TransactionTemplate transactionTemplate;
 
-    public TenantProvisioningService(MultiTenantLiquibaseService liquibaseService) {
+    public TenantProvisioningService(MultiTenantLiquibaseService liquibaseService,
+                                     TenantRepository tenantRepository,
+                                     TenantSchemaVersionService schemaVersionService,
+                                     TenantSchemaBuilder schemaBuilder,
+                                     TenantSchemaPoolService schemaPoolService,
+                                     BoundedTenantTaskRunner taskRunner,
+                                     JdbcTemplate jdbcTemplate,
+                                     TenantShardService shardService,
+                                     LazyTenantMigrationService lazyMigrationService,
+                                     TenantRoutingDataSource routingDataSource,
+                                     TransactionTemplate transactionTemplate) {
         this.liquibaseService = liquibaseService;
+        this.tenantRepository = tenantRepository;
+        this.schemaVersionService = schemaVersionService;
+        this.schemaBuilder = schemaBuilder;
+        this.schemaPoolService = schemaPoolService;
+        this.taskRunner = taskRunner;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardService = shardService;
+        this.lazyMigrationService = lazyMigrationService;
+        this.routingDataSource = routingDataSource;
+        this.transactionTemplate = transactionTemplate;
     }
 
     /**
-     * Provision a new tenant with its own schema
+     * Provision a new tenant with its own schema, on the least loaded shard
      *
      * @param tenantId Unique tenant identifier
      * @param tenantName Display name for the tenant
      * @return Created Tenant object
+     * @throws IllegalStateException if the tenant or its schema already exists
      */
     public Tenant provisionNewTenant(String tenantId, String tenantName) {
         log.info("Provisioning new tenant: {} ({})", tenantName, tenantId);
 
         // Generate schema name (e.g., tenant_abc123)
-        String schemaName = "tenant_" + tenantId.toLowerCase().replaceAll("[^a-z0-9_]", "_");
+        String schemaName = schemaNameFor(tenantId);
+
+        // Checked before placement, which would re-route an existing schema
+        if (!tenantRepository.findByTenantIdInOrSchemaNameIn(List.of(tenantId), List.of(schemaName)).isEmpty()) {
+            throw new IllegalStateException("Tenant or schema already exists: " + tenantId);
+        }
 
         // Create tenant object
         Tenant tenant = new Tenant();
@@ -39,11 +114,24 @@ public class TenantProvisioningService {
         tenant.setActive(true);
 
         try {
-            // Run Liquibase migration to create schema and tables
-            liquibaseService.migrateSchema(tenantId, schemaName);
+            tenant.setShardId(shardService.placeNewSchema(schemaName));
+
+            // Claim a pre-migrated schema from the warm pool when one is ready (pooled schemas are on the primary)
+            Optional<Tenant> pooled = Tenant.PRIMARY_SHARD.equals(tenant.getShardId())
+                    ? schemaPoolService.claim(tenant) : Optional.empty();
+            if (pooled.isPresent()) {
+                log.info("Successfully provisioned tenant: {} with pooled schema: {}", tenantId, schemaName);
+                return pooled.get();
+            }
+
+            // Create schema and tables
+            String changelogHash = schemaVersionService.currentChangeLogHash();
+            schemaBuilder.build(tenantId, schemaName);
+            tenant.setChangelogHash(changelogHash);
+            tenant.setSchemaMigratedAt(Instant.now());
 
-            // TODO: Save tenant to database (public.tenants table)
-            // tenantRepository.save(tenant);
+            // Save tenant to database (public.tenants table)
+            tenant = tenantRepository.save(tenant);
 
             log.info("Successfully provisioned tenant: {} with schema: {}", tenantId, schemaName);
 
@@ -51,16 +139,225 @@ public class TenantProvisioningService {
 
         } catch (Exception e) {
             log.error("Failed to provision tenant: {}", tenantId, e);
+            // Keep the route if a concurrent request provisioned the same tenant
+            if (tenantRepository.findBySchemaName(schemaName).isEmpty()) {
+                shardService.releasePlacements(List.of(schemaName));
+            }
             throw new RuntimeException("Failed to provision tenant: " + tenantId, e);
         }
     }
 
+    /**
+     * Provision many tenants at once
+     * Schemas are created with one batched statement, migrated (or cloned from the
+     * template) in parallel under a concurrency cap, and the tenant rows are inserted
+     * in batched writes. Tenants whose build or row insert fails are reported as failed
+     * and their schemas dropped. Bulk runs don't draw from the warm schema pool, which is
+     * kept for interactive signups.
+     *
+     * @param requests Tenant ids and names to provision
+     * @return Per-tenant outcome report
+     */
+    public BulkProvisioningReport provisionTenants(List<TenantProvisioningRequest> requests) {
+        long start = System.nanoTime();
+        log.info("Bulk provisioning {} tenants", requests.size());
+
+        List<TenantTaskResult> results = new ArrayList<>();
+        Map<String, Tenant> candidates = new LinkedHashMap<>();
+        Set<String> schemaNames = new HashSet<>();
+        for (TenantProvisioningRequest request : requests) {
+            if (request.getTenantId() == null || request.getTenantId().isBlank()
+                    || request.getTenantName() == null || request.getTenantName().isBlank()) {
+                results.add(TenantTaskResult.failed(request.getTenantId(), null, 0,
+                        new IllegalArgumentException("Tenant id and name are required")));
+                continue;
+            }
+            String schemaName = schemaNameFor(request.getTenantId());
+            if (candidates.containsKey(request.getTenantId()) || !schemaNames.add(schemaName)) {
+                results.add(TenantTaskResult.failed(request.getTenantId(), schemaName, 0,
+                        new IllegalArgumentException("Duplicate tenant or schema in request")));
+                continue;
+            }
+            Tenant tenant = new Tenant();
+            tenant.setTenantId(request.getTenantId());
+            tenant.setTenantName(request.getTenantName());
+            tenant.setSchemaName(schemaName);
+            tenant.setActive(true);
+            candidates.put(request.getTenantId(), tenant);
+        }
+
+        // Skip tenants that already exist
+        for (Tenant existing : tenantRepository.findByTenantIdInOrSchemaNameIn(candidates.keySet(), schemaNames)) {
+            candidates.values().removeIf(tenant -> {
+                boolean clash = tenant.getTenantId().equals(existing.getTenantId())
+                        || tenant.getSchemaName().equals(existing.getSchemaName());
+                if (clash) {
+                    results.add(TenantTaskResult.failed(tenant.getTenantId(), tenant.getSchemaName(), 0,
+                            new IllegalStateException("Tenant or schema already exists")));
+                }
+                return clash;
+            });
+        }
+
+        List<Tenant> tenants = new ArrayList<>(candidates.values());
+        Map<String, String> placements = shardService.placeNewSchemas(
+                tenants.stream().map(Tenant::getSchemaName).toList());
+        tenants.forEach(tenant -> tenant.setShardId(placements.get(tenant.getSchemaName())));
+        String changelogHash = schemaVersionService.currentChangeLogHash();
+        boolean useTemplate = schemaBuilder.usesTemplate();
+        if (!useTemplate) {
+            liquibaseService.createSchemas(tenants.stream().map(Tenant::getSchemaName).toList());
+        }
+
+        int concurrency = taskRunner.poolBoundedConcurrency(bulkConcurrency);
+        List<TenantTaskResult> buildResults = taskRunner.run("bulk-provisioning", tenants, concurrency,
+                tenant -> {
+                    if (useTemplate) {
+                        schemaBuilder.build(tenant.getTenantId(), tenant.getSchemaName());
+                    } else {
+                        liquibaseService.migrateSchema(tenant.getTenantId(), tenant.getSchemaName());
+                    }
+                });
+        results.addAll(buildResults);
+
+        Set<String> built = new HashSet<>();
+        buildResults.stream().filter(TenantTaskResult::isSuccess).forEach(result -> built.add(result.getTenantId()));
+        List<Tenant> inserted = tenants.stream().filter(tenant -> built.contains(tenant.getTenantId())).toList();
+        Map<String, Exception> insertFailures = insertTenants(inserted, changelogHash);
+        if (!insertFailures.isEmpty()) {
+            results.replaceAll(result -> insertFailures.containsKey(result.getTenantId()) && result.isSuccess()
+                    ? TenantTaskResult.failed(result.getTenantId(), result.getSchemaName(), result.getDurationMillis(),
+                            insertFailures.get(result.getTenantId()))
+                    : result);
+        }
+        List<Tenant> provisioned = inserted.stream()
+                .filter(tenant -> !insertFailures.containsKey(tenant.getTenantId()))
+                .toList();
+        abandonSchemas(tenants.stream()
+                .filter(tenant -> !built.contains(tenant.getTenantId()) || insertFailures.containsKey(tenant.getTenantId()))
+                .toList());
+
+        long wallClockMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Bulk provisioning finished: {} of {} tenants provisioned in {} ms",
+                provisioned.size(), requests.size(), wallClockMillis);
+        return new BulkProvisioningReport(requests.size(), provisioned.size(),
+                requests.size() - provisioned.size(), wallClockMillis, results);
+    }
+
+    /**
+     * Insert tenant rows in JDBC batches, one transaction per batch
+     * (IDENTITY ids stop Hibernate from batching inserts, so this bypasses JPA). A batch
+     * that fails is rolled back and its rows inserted one by one, so a bad or clashing row
+     * only fails its own tenant.
+     *
+     * @return Failure by tenant id, for the rows that couldn't be inserted
+     */
+    private Map<String, Exception> insertTenants(List<Tenant> tenants, String changelogHash) {
+        Timestamp migratedAt = Timestamp.from(Instant.now());
+        ParameterizedPreparedStatementSetter<Tenant> setter = (ps, tenant) -> {
+            ps.setString(1, tenant.getTenantId());
+            ps.setString(2, tenant.getTenantName());
+            ps.setString(3, tenant.getSchemaName());
+            ps.setString(4, changelogHash);
+            ps.setTimestamp(5, migratedAt);
+            ps.setString(6, tenant.getShardId());
+        };
+
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        for (int from = 0; from < tenants.size(); from += INSERT_BATCH_SIZE) {
+            List<Tenant> batch = tenants.subList(from, Math.min(tenants.size(), from + INSERT_BATCH_SIZE));
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_TENANT_SQL, batch, batch.size(), setter));
+            } catch (DataAccessException | TransactionException e) {
+                log.warn("Batch insert of {} tenant rows failed, inserting them one by one: {}",
+                        batch.size(), e.getMostSpecificCause().getMessage());
+                for (Tenant tenant : batch) {
+                    try {
+                        jdbcTemplate.update(INSERT_TENANT_SQL, ps -> setter.setValues(ps, tenant));
+                    } catch (DuplicateKeyException duplicate) {
+                        failures.put(tenant.getTenantId(), new IllegalStateException("Tenant or schema already exists"));
+                    } catch (DataAccessException rowError) {
+                        failures.put(tenant.getTenantId(), rowError);
+                    }
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Drop the schemas built for tenants whose rows were never written, and their routes
+     * A schema that a concurrent request provisioned on the same shard is left alone
+     */
+    private void abandonSchemas(List<Tenant> tenants) {
+        for (Tenant tenant : tenants) {
+            Optional<Tenant> owner = tenantRepository.findBySchemaName(tenant.getSchemaName());
+            if (owner.isPresent()) {
+                routingDataSource.assignShard(tenant.getSchemaName(), owner.get().getShardId());
+                if (owner.get().getShardId().equals(tenant.getShardId())) {
+                    continue;
+                }
+            } else {
+                shardService.releasePlacements(List.of(tenant.getSchemaName()));
+            }
+            try (Connection connection = routingDataSource.shardDataSource(tenant.getShardId()).getConnection();
+                 Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP SCHEMA IF EXISTS " + quote(tenant.getSchemaName()) + " CASCADE");
+                log.info("Dropped orphaned schema {} from shard {}", tenant.getSchemaName(), tenant.getShardId());
+            } catch (SQLException e) {
+                log.warn("Failed to drop orphaned schema {} from shard {}; drop it by hand",
+                        tenant.getSchemaName(), tenant.getShardId(), e);
+            }
+        }
+    }
+
+    /**
+     * Serve a tenant on a host name (requests to it resolve to the tenant without a header)
+     *
+     * @param tenantId Tenant to update
+     * @param hostname Host name, null to remove it
+     * @return The updated tenant
+     */
+    public Tenant assignHostname(String tenantId, String hostname) {
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+        tenant.setHostname(hostname == null || hostname.isBlank() ? null : hostname.trim().toLowerCase(Locale.ROOT));
+        tenant = tenantRepository.save(tenant);
+        log.info("Tenant {} is now served on host {}", tenantId, tenant.getHostname());
+        return tenant;
+    }
+
+    /**
+     * Schema name for a tenant id (e.g., tenant_abc123)
+     */
+    public static String schemaNameFor(String tenantId) {
+        return "tenant_" + tenantId.toLowerCase().replaceAll("[^a-z0-9_]", "_");
+    }
+
     /**
      * Update existing tenant schema (run migrations)
+     * Returns without touching Liquibase when the tenant's version stamp
+     * already matches the current changelog
      */
     public void updateTenantSchema(String tenantId, String schemaName) {
+        Optional<Tenant> tenant = tenantRepository.findBySchemaName(schemaName);
+        if (tenant.isPresent() && schemaVersionService.isUpToDate(tenant.get())) {
+            log.debug("Schema {} for tenant {} is already up to date", schemaName, tenantId);
+            return;
+        }
+
         log.info("Updating schema for tenant: {}", tenantId);
+        String changelogHash = schemaVersionService.currentChangeLogHash();
         liquibaseService.migrateSchema(tenantId, schemaName);
+        schemaVersionService.markUpToDate(schemaName, changelogHash);
+    }
+
+    /**
+     * SQL the next update would run for a tenant, for review before applying it
+     */
+    public String pendingMigrationSql(String tenantId, String schemaName) {
+        return liquibaseService.renderPendingSql(tenantId, schemaName);
     }
 
     /**
@@ -69,6 +366,8 @@ public class TenantProvisioningService {
     public void rollbackTenantSchema(String tenantId, String schemaName) {
         log.info("Rolling back schema for tenant: {}", tenantId);
         liquibaseService.rollbackLastChange(tenantId, schemaName);
+        schemaVersionService.markRolledBack(schemaName);
+        lazyMigrationService.forget(schemaName);
     }
 }
 
@@ -0,0 +1,291 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.repository.TenantRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * In-memory copy of public.tenants for resolving requests to tenants
+ * All rows are loaded once; lookups read an immutable snapshot and never touch
+ * the database. Every insert, update or delete of a tenant row fires a NOTIFY
+ * (see add_tenant_change_notify.sql); each node LISTENs on its own connection,
+ * reloads the changed rows and swaps in a new snapshot, so changes show up on all
+ * nodes right after commit. A periodic full reload covers notifications missed
+ * while the listening connection was down. The registry also tells the connection
+ * router which shard each schema is on, so it loads right after the master schema
+ * migration, before other startup work touches tenant schemas.
+ */
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class TenantRegistry implements ApplicationRunner {
+
+    public static final String CHANGE_CHANNEL = "tenant_changes";
+
+    @Value("${realtygen.tenancy.registry.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * How long the listener blocks waiting for notifications before checking for shutdown
+     */
+    @Value("${realtygen.tenancy.registry.poll-timeout-ms:1000}")
+    private int pollTimeoutMillis;
+
+    @Value("${realtygen.tenancy.registry.reconnect-delay-ms:5000}")
+    private long reconnectDelayMillis;
+
+    private final TenantRepository tenantRepository;
+    private final DataSourceProperties dataSourceProperties;
+    private final TenantRoutingDataSource routingDataSource;
+
+    /**
+     * Current snapshot, null until the first load (lookups go to the database until then)
+     */
+    private volatile Snapshot snapshot;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public TenantRegistry(TenantRepository tenantRepository, DataSourceProperties dataSourceProperties,
+                          TenantRoutingDataSource routingDataSource) {
+        this.tenantRepository = tenantRepository;
+        this.dataSourceProperties = dataSourceProperties;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Tenant by id; the returned entity is shared, don't modify it
+     */
+    public Optional<Tenant> findByTenantId(String tenantId) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return tenantRepository.findByTenantId(tenantId);
+        }
+        return Optional.ofNullable(current.byTenantId().get(tenantId));
+    }
+
+    /**
+     * Tenant by schema name; the returned entity is shared, don't modify it
+     */
+    public Optional<Tenant> findBySchemaName(String schemaName) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return tenantRepository.findBySchemaName(schemaName);
+        }
+        return Optional.ofNullable(current.bySchemaName().get(schemaName));
+    }
+
+    /**
+     * Tenant served on a host name; empty until the registry is loaded
+     */
+    public Optional<Tenant> findByHostname(String hostname) {
+        Snapshot current = snapshot;
+        if (current == null || hostname == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(current.byHostname().get(hostname.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Every tenant, including deactivated ones; the entities are shared, don't modify them
+     */
+    public Collection<Tenant> tenants() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return tenantRepository.findAll();
+        }
+        return current.byId().values();
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.byId().size() : 0;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        start();
+    }
+
+    /**
+     * Load all tenants and start listening for changes (after the master schema is migrated)
+     */
+    public synchronized void start() {
+        if (!enabled) {
+            if (routingDataSource.shardIds().size() > 1) {
+                throw new IllegalStateException("Tenant sharding needs realtygen.tenancy.registry.enabled=true");
+            }
+            return;
+        }
+        if (running) {
+            return;
+        }
+        running = true;
+        // Shard routes must be known before anything works on tenant schemas
+        reload();
+        listener = new Thread(this::listen, "tenant-registry-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = listener;
+            listener = null;
+        }
+        if (thread != null) {
+            thread.join(pollTimeoutMillis * 2L);
+        }
+    }
+
+    /**
+     * Replace the snapshot with every row of public.tenants
+     * Reads and publishes under the same lock as {@link #refresh}, so a full load read
+     * before a change can't be published over the refresh that applied it
+     */
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.registry.full-reload-interval-ms:300000}",
+            initialDelayString = "${realtygen.tenancy.registry.full-reload-interval-ms:300000}")
+    public void reload() {
+        if (!running) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                List<Tenant> tenants = tenantRepository.findAll();
+                Map<Long, Tenant> byId = new HashMap<>();
+                tenants.forEach(tenant -> byId.put(tenant.getId(), tenant));
+                publish(byId);
+                routeShards(tenants);
+                log.debug("Tenant registry loaded {} tenants", byId.size());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to reload the tenant registry", e);
+        }
+    }
+
+    /**
+     * Reload the given tenant rows, dropping those that no longer exist
+     */
+    public synchronized void refresh(Set<Long> ids) {
+        List<Tenant> changed = tenantRepository.findAllById(ids);
+        Snapshot current = snapshot;
+        Map<Long, Tenant> byId = current != null ? new HashMap<>(current.byId()) : new HashMap<>();
+        ids.forEach(byId::remove);
+        changed.forEach(tenant -> byId.put(tenant.getId(), tenant));
+        publish(byId);
+        routeShards(changed);
+    }
+
+    private void routeShards(Collection<Tenant> tenants) {
+        Map<String, String> shards = new HashMap<>();
+        tenants.forEach(tenant -> shards.put(tenant.getSchemaName(), tenant.getShardId()));
+        routingDataSource.updateShardAssignments(shards);
+    }
+
+    private synchronized void publish(Map<Long, Tenant> byId) {
+        Map<String, Tenant> byTenantId = new HashMap<>();
+        Map<String, Tenant> bySchemaName = new HashMap<>();
+        Map<String, Tenant> byHostname = new HashMap<>();
+        for (Tenant tenant : byId.values()) {
+            byTenantId.put(tenant.getTenantId(), tenant);
+            bySchemaName.put(tenant.getSchemaName(), tenant);
+            if (tenant.getHostname() != null) {
+                byHostname.put(tenant.getHostname().toLowerCase(Locale.ROOT), tenant);
+            }
+        }
+        snapshot = new Snapshot(Map.copyOf(byId), Map.copyOf(byTenantId),
+                Map.copyOf(bySchemaName), Map.copyOf(byHostname));
+    }
+
+    /**
+     * Listener loop: LISTEN on a dedicated connection (not a pooled one, it is held
+     * for the node's lifetime), full load, then apply notifications as they arrive.
+     * A lost connection is reopened and followed by another full load.
+     */
+    private void listen() {
+        while (running) {
+            try (Connection connection = openListenConnection()) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("LISTEN " + CHANGE_CHANNEL);
+                }
+                // Load after LISTEN so no change can slip in between
+                reload();
+                log.info("Tenant registry loaded {} tenants, listening for changes", size());
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+                    if (notifications != null && notifications.length > 0) {
+                        refresh(changedIds(notifications));
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Tenant registry lost its change listener, reconnecting in {} ms", reconnectDelayMillis, e);
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection openListenConnection() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private static Set<Long> changedIds(PGNotification[] notifications) {
+        Set<Long> ids = new HashSet<>();
+        for (PGNotification notification : notifications) {
+            try {
+                ids.add(Long.parseLong(notification.getParameter()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed tenant change notification: {}", notification.getParameter());
+            }
+        }
+        return ids;
+    }
+
+    private record Snapshot(Map<Long, Tenant> byId,
+                            Map<String, Tenant> byTenantId,
+                            Map<String, Tenant> bySchemaName,
+                            Map<String, Tenant> byHostname) {
+    }
+}
@@ -0,0 +1,1048 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.entity.TenantRelocation;
+import com.homefinder.realitygen.enums.RelocationState;
+import com.homefinder.realitygen.repository.TenantRelocationRepository;
+import com.homefinder.realitygen.repository.TenantRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static com.homefinder.realitygen.service.TenantArchiveService.columnList;
+import static com.homefinder.realitygen.service.TenantArchiveService.qualified;
+import static com.homefinder.realitygen.service.TenantArchiveService.quote;
+
+/**
+ * Moves a tenant schema to another shard while the tenant stays online
+ * Row triggers on the source schema record the key of every row written from then
+ * on; the tables are bulk copied to the target with binary COPY from one snapshot,
+ * then the recorded rows are replayed (current source row upserted, or deleted when
+ * gone) until the backlog is small. The tenant's tables are then locked against
+ * writes (reads go on), the last changes replayed and public.tenants switched to the
+ * target shard, which every node picks up through the tenant registry. Only that
+ * tenant's writes wait, for the length of the final replay. Writes that queued behind
+ * the lock fail with a serialization error once it is released, and the application's
+ * {@link com.homefinder.realitygen.config.RetryingTransactionTemplate} runs them again on
+ * the new shard instead of letting them land in the old copy, which is dropped a while later.
+ */
+@Slf4j
+@Service
+public class TenantRelocationService {
+
+    static final String CHANGES_TABLE = "_relocation_changes";
+
+    private static final String CAPTURE_FUNCTION = "_relocation_capture";
+
+    private static final String FENCE_FUNCTION = "_relocation_fence";
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
+    private static final Set<RelocationState> FINISHED = EnumSet.of(RelocationState.SUCCEEDED, RelocationState.FAILED);
+
+    /**
+     * Recorded changes replayed per round trip
+     */
+    @Value("${realtygen.tenancy.relocation.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Give up when replay can't get within one batch of the source's writes in this time
+     */
+    @Value("${realtygen.tenancy.relocation.catch-up-timeout-ms:600000}")
+    private long catchUpTimeoutMillis;
+
+    /**
+     * Longest wait for the tenant's table locks before backing off (so its writes don't queue behind us)
+     */
+    @Value("${realtygen.tenancy.relocation.lock-timeout-ms:2000}")
+    private long lockTimeoutMillis;
+
+    /**
+     * Writes are released and the switch retried when the final replay runs longer than this
+     */
+    @Value("${realtygen.tenancy.relocation.max-write-pause-ms:5000}")
+    private long maxWritePauseMillis;
+
+    @Value("${realtygen.tenancy.relocation.cutover-attempts:3}")
+    private int cutoverAttempts;
+
+    /**
+     * Time the old schema is kept after the switch, for reads still in flight on it
+     */
+    @Value("${realtygen.tenancy.relocation.cleanup-delay-ms:30000}")
+    private long cleanupDelayMillis;
+
+    @Value("${realtygen.tenancy.relocation.retention-minutes:60}")
+    private long retentionMinutes;
+
+    /**
+     * An unfinished relocation whose heartbeat is older than this is taken over (and finished or cleaned up)
+     */
+    @Value("${realtygen.tenancy.relocation.heartbeat-lease-ms:60000}")
+    private long heartbeatLeaseMillis;
+
+    private final TenantRoutingDataSource routingDataSource;
+    private final TenantRepository tenantRepository;
+    private final TenantRelocationRepository relocationRepository;
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final TenantSchemaVersionService schemaVersionService;
+    private final TaskExecutor relocationExecutor;
+    private final TaskScheduler taskScheduler;
+    private final String nodeId;
+
+    private final Set<String> runningHere = ConcurrentHashMap.newKeySet();
+
+    public TenantRelocationService(TenantRoutingDataSource routingDataSource,
+                                   TenantRepository tenantRepository,
+                                   TenantRelocationRepository relocationRepository,
+                                   MultiTenantLiquibaseService liquibaseService,
+                                   TenantSchemaVersionService schemaVersionService,
+                                   @Qualifier("relocationExecutor") TaskExecutor relocationExecutor,
+                                   TaskScheduler taskScheduler,
+                                   @Value("${realtygen.node-id:}") String nodeId) {
+        this.routingDataSource = routingDataSource;
+        this.tenantRepository = tenantRepository;
+        this.relocationRepository = relocationRepository;
+        this.liquibaseService = liquibaseService;
+        this.schemaVersionService = schemaVersionService;
+        this.relocationExecutor = relocationExecutor;
+        this.taskScheduler = taskScheduler;
+        this.nodeId = nodeId.isBlank() ? FleetJobService.defaultNodeId() : nodeId;
+    }
+
+    /**
+     * Queue the move of a tenant to another shard, or return the relocation already pending for it
+     *
+     * @throws IllegalArgumentException for an unknown tenant or shard
+     * @throws IllegalStateException if the tenant is deactivated or already on the shard
+     * @throws TaskRejectedException if the relocation queue is full
+     */
+    public TenantRelocation submit(String tenantId, String targetShard) {
+        Tenant tenant = tenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + tenantId));
+        routingDataSource.shardDataSource(targetShard);
+        if (!tenant.getActive()) {
+            throw new IllegalStateException("Tenant " + tenantId + " is deactivated");
+        }
+        if (schemaVersionService.isPinned(tenant)) {
+            // The target copy is built from the current changelog
+            throw new IllegalStateException("Tenant " + tenantId + " is pinned after a rollback, update it first");
+        }
+
+        Optional<TenantRelocation> pending = relocationRepository.findFirstByTenantIdAndStateNotIn(tenantId, FINISHED);
+        if (pending.isPresent()) {
+            return pending.get();
+        }
+        if (targetShard.equals(tenant.getShardId())) {
+            throw new IllegalStateException("Tenant " + tenantId + " is already on shard " + targetShard);
+        }
+
+        Instant now = Instant.now();
+        TenantRelocation relocation = new TenantRelocation();
+        relocation.setRelocationId(UUID.randomUUID().toString());
+        relocation.setTenantId(tenantId);
+        relocation.setSchemaName(tenant.getSchemaName());
+        relocation.setSourceShard(tenant.getShardId());
+        relocation.setTargetShard(targetShard);
+        relocation.setState(RelocationState.QUEUED);
+        relocation.setOwnerNode(nodeId);
+        relocation.setHeartbeatAt(now);
+        relocation.setSubmittedAt(now);
+        try {
+            relocation = relocationRepository.saveAndFlush(relocation);
+        } catch (DataIntegrityViolationException e) {
+            // Submitted at the same time, here or on another node (one unfinished relocation per tenant)
+            return relocationRepository.findFirstByTenantIdAndStateNotIn(tenantId, FINISHED).orElseThrow(() -> e);
+        }
+
+        try {
+            submit(relocation);
+        } catch (TaskRejectedException e) {
+            relocationRepository.deleteById(relocation.getRelocationId());
+            log.warn("Relocation queue is full, rejecting relocation of tenant {}", tenantId);
+            throw e;
+        }
+
+        log.info("Queued relocation {} of tenant {} from shard {} to shard {}",
+                relocation.getRelocationId(), tenantId, tenant.getShardId(), targetShard);
+        return relocation;
+    }
+
+    public Optional<TenantRelocation> getRelocation(String relocationId) {
+        return relocationRepository.findById(relocationId);
+    }
+
+    private void submit(TenantRelocation relocation) {
+        String relocationId = relocation.getRelocationId();
+        if (!runningHere.add(relocationId)) {
+            return;
+        }
+        try {
+            relocationExecutor.execute(() -> run(relocationId));
+        } catch (RuntimeException e) {
+            runningHere.remove(relocationId);
+            throw e;
+        }
+    }
+
+    /**
+     * Run a queued relocation, or finish one taken over from a failed node. Whatever
+     * stops a relocation, the outcome is settled from public.tenants: a tenant already
+     * on the target only needs the old copy dropped, otherwise the capture triggers
+     * and the partial copy are removed and the tenant stays where it was. A switched
+     * relocation stays running here until its scheduled source drop has finished.
+     */
+    private void run(String relocationId) {
+        Move switched = null;
+        try {
+            TenantRelocation relocation = relocationRepository.findById(relocationId).orElse(null);
+            if (relocation == null) {
+                return;
+            }
+
+            String reason;
+            if (relocation.getState() == RelocationState.QUEUED) {
+                update(relocationId, queued -> queued.setStartedAt(Instant.now()));
+                try {
+                    switched = relocate(relocation);
+                    scheduleSourceDrop(switched);
+                    return;
+                } catch (Exception e) {
+                    if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                        // Node shutting down: settled by the recovery check after the restart or on another node
+                        log.info("Relocation {} interrupted, leaving it to be settled", relocationId);
+                        return;
+                    }
+                    log.error("Relocation {} of tenant {} failed", relocationId, relocation.getTenantId(), e);
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    reason = cause.getMessage();
+                }
+            } else {
+                log.info("Settling relocation {} of tenant {}, interrupted while {}",
+                        relocationId, relocation.getTenantId(), relocation.getState());
+                reason = "Interrupted while " + relocation.getState() + " (node stopped or failed)";
+            }
+            switched = settle(relocationRepository.findById(relocationId).orElse(relocation), reason);
+            if (switched != null) {
+                scheduleSourceDrop(switched);
+            }
+
+        } catch (Exception e) {
+            // Left unfinished; the next recovery check on this node retries it
+            log.error("Failed to settle relocation {}, retrying later", relocationId, e);
+        } finally {
+            if (switched == null) {
+                runningHere.remove(relocationId);
+            }
+        }
+    }
+
+    /**
+     * Finish a stopped relocation from where public.tenants says it is, returning the move
+     * when the tenant was already switched and only the old copy is left to drop
+     */
+    private Move settle(TenantRelocation relocation, String reason) throws SQLException {
+        Move move = new Move(relocation, routingDataSource.shardDataSource(relocation.getSourceShard()),
+                routingDataSource.shardDataSource(relocation.getTargetShard()));
+        Optional<Tenant> tenant = tenantRepository.findByTenantId(relocation.getTenantId());
+
+        if (tenant.isPresent() && move.targetShard.equals(tenant.get().getShardId())) {
+            // Switched before it stopped: only the old copy is left to drop
+            routingDataSource.assignShard(move.schemaName, move.targetShard);
+            update(move.relocationId, switched -> switched.setState(RelocationState.CLEANING_UP));
+            return move;
+        }
+
+        // Nothing is created before the relocation leaves QUEUED
+        if (relocation.getState() != RelocationState.QUEUED) {
+            try (Connection control = move.sourcePool.getConnection()) {
+                removeCapture(control, move.schemaName);
+            }
+            dropTargetSchema(move);
+        }
+        finish(move.relocationId, RelocationState.FAILED, reason);
+        log.info("Relocation {} cleaned up, tenant {} stays on shard {}",
+                move.relocationId, move.tenantId, move.sourceShard);
+        return null;
+    }
+
+    /**
+     * Move the tenant, returning once it has been switched to the target
+     */
+    private Move relocate(TenantRelocation relocation) throws Exception {
+        Tenant tenant = tenantRepository.findByTenantId(relocation.getTenantId())
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tenant: " + relocation.getTenantId()));
+        if (!tenant.getShardId().equals(relocation.getSourceShard())) {
+            throw new IllegalStateException("Tenant " + tenant.getTenantId() + " moved to shard "
+                    + tenant.getShardId() + " after the relocation was queued");
+        }
+
+        // Both copies have to be at the same changelog version
+        if (!schemaVersionService.isUpToDate(tenant)) {
+            String changelogHash = schemaVersionService.currentChangeLogHash();
+            liquibaseService.migrateSchema(tenant.getTenantId(), tenant.getSchemaName());
+            schemaVersionService.markUpToDate(tenant.getSchemaName(), changelogHash);
+        }
+
+        Move move = new Move(relocation, routingDataSource.shardDataSource(relocation.getSourceShard()),
+                routingDataSource.shardDataSource(relocation.getTargetShard()));
+        long start = System.nanoTime();
+
+        try (Connection control = move.sourcePool.getConnection()) {
+            // Keeps migrations off the source schema until it has been switched
+            lockSchema(control, move.schemaName);
+            try {
+                move.describe(describeTables(control, move.schemaName));
+                requireAbsentOnTarget(move);
+
+                // From here on a failure (or a node crash) leaves something to clean up
+                update(move.relocationId, running -> running.setState(RelocationState.COPYING));
+                installCapture(control, move);
+
+                liquibaseService.migrateSchemaOnShard(move.tenantId, move.schemaName, move.targetShard);
+                move.rowsCopied = copyTables(move);
+                update(move.relocationId, running -> {
+                    running.setRowsCopied(move.rowsCopied);
+                    running.setState(RelocationState.CATCHING_UP);
+                });
+
+                cutOver(control, move);
+
+            } finally {
+                MultiTenantLiquibaseService.releaseSchemaLock(move.sourcePool, control, move.schemaName);
+            }
+        }
+
+        log.info("Relocated tenant {} from shard {} to shard {} in {} ms ({} rows copied, {} changes replayed)",
+                move.tenantId, move.sourceShard, move.targetShard, (System.nanoTime() - start) / 1_000_000,
+                move.rowsCopied, move.changesReplayed);
+
+        update(move.relocationId, switched -> switched.setState(RelocationState.CLEANING_UP));
+        return move;
+    }
+
+    /**
+     * Tables to move in foreign-key order, with their copyable columns and primary keys
+     */
+    private List<TableInfo> describeTables(Connection connection, String schemaName) throws SQLException {
+        List<TableInfo> tables = new ArrayList<>();
+        for (String table : TenantArchiveService.tablesInDependencyOrder(connection, schemaName)) {
+            if (table.equals(CHANGES_TABLE)) {
+                continue;
+            }
+            List<String> keys = primaryKey(connection, schemaName, table);
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("Table " + schemaName + "." + table
+                        + " has no primary key; its changes can't be replayed on another shard");
+            }
+            tables.add(new TableInfo(table, TenantArchiveService.copyableColumns(connection, schemaName, table), keys));
+        }
+        return tables;
+    }
+
+    private List<String> primaryKey(Connection connection, String schemaName, String table) throws SQLException {
+        List<String> keys = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT a.attname FROM pg_index i JOIN pg_class c ON c.oid = i.indrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum = ANY (i.indkey) "
+                        + "WHERE i.indisprimary AND n.nspname = ? AND c.relname = ? "
+                        + "ORDER BY array_position(i.indkey::int2[], a.attnum)")) {
+            ps.setString(1, schemaName);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString(1));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private void requireAbsentOnTarget(Move move) throws SQLException {
+        try (Connection target = move.targetPool.getConnection();
+             PreparedStatement ps = target.prepareStatement("SELECT EXISTS (SELECT 1 FROM pg_namespace WHERE nspname = ?)")) {
+            ps.setString(1, move.schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    throw new IllegalStateException("Schema " + move.schemaName + " already exists on shard "
+                            + move.targetShard + " (left over from an earlier move?); drop it first");
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the key of every row written to the tenant's tables from now on
+     * One row per key; an update that changes a key records both keys
+     */
+    private void installCapture(Connection control, Move move) throws SQLException {
+        String schemaName = move.schemaName;
+        String changes = qualified(schemaName, CHANGES_TABLE);
+        try (Statement stmt = control.createStatement()) {
+            stmt.execute("SET lock_timeout = " + lockTimeoutMillis);
+            try {
+                stmt.execute("CREATE TABLE " + changes
+                        + " (id BIGSERIAL PRIMARY KEY, table_name TEXT NOT NULL, pk JSONB NOT NULL)");
+                stmt.execute(captureFunction(schemaName));
+                // TRUNCATE fires no row triggers, so it can't be replayed
+                stmt.execute("CREATE FUNCTION " + qualified(schemaName, FENCE_FUNCTION) + "() RETURNS trigger "
+                        + "LANGUAGE plpgsql AS $$\n"
+                        + "BEGIN\n"
+                        + "    RAISE EXCEPTION 'Tenant schema % is being moved to another shard', TG_TABLE_SCHEMA "
+                        + "USING ERRCODE = '55000';\n"
+                        + "END\n"
+                        + "$$");
+
+                for (TableInfo table : move.tables) {
+                    String keyArguments = String.join(", ", table.keys().stream()
+                            .map(key -> "'" + key.replace("'", "''") + "'").toList());
+                    stmt.execute("CREATE TRIGGER " + CAPTURE_FUNCTION + " AFTER INSERT OR UPDATE OR DELETE ON "
+                            + qualified(schemaName, table.name()) + " FOR EACH ROW EXECUTE FUNCTION "
+                            + qualified(schemaName, CAPTURE_FUNCTION) + "(" + keyArguments + ")");
+                    stmt.execute("CREATE TRIGGER " + FENCE_FUNCTION + " BEFORE TRUNCATE ON "
+                            + qualified(schemaName, table.name()) + " FOR EACH STATEMENT EXECUTE FUNCTION "
+                            + qualified(schemaName, FENCE_FUNCTION) + "()");
+                }
+            } finally {
+                stmt.execute("RESET lock_timeout");
+            }
+        }
+        log.info("Capturing changes to {} tables of schema {} on shard {}",
+                move.tables.size(), schemaName, move.sourceShard);
+    }
+
+    /**
+     * Trigger function recording the keys (passed as trigger arguments) of written rows
+     */
+    private static String captureFunction(String schemaName) {
+        String changes = qualified(schemaName, CHANGES_TABLE);
+        return "CREATE OR REPLACE FUNCTION " + qualified(schemaName, CAPTURE_FUNCTION) + "() RETURNS trigger "
+                + "LANGUAGE plpgsql AS $$\n"
+                + "DECLARE\n"
+                + "    new_key JSONB;\n"
+                + "    old_key JSONB;\n"
+                + "BEGIN\n"
+                + "    IF TG_OP <> 'DELETE' THEN\n"
+                + "        SELECT jsonb_object_agg(k, to_jsonb(NEW) -> k) INTO new_key FROM unnest(TG_ARGV) AS k;\n"
+                + "        INSERT INTO " + changes + " (table_name, pk) VALUES (TG_TABLE_NAME, new_key);\n"
+                + "    END IF;\n"
+                + "    IF TG_OP <> 'INSERT' THEN\n"
+                + "        SELECT jsonb_object_agg(k, to_jsonb(OLD) -> k) INTO old_key FROM unnest(TG_ARGV) AS k;\n"
+                + "        IF old_key IS DISTINCT FROM new_key THEN\n"
+                + "            INSERT INTO " + changes + " (table_name, pk) VALUES (TG_TABLE_NAME, old_key);\n"
+                + "        END IF;\n"
+                + "    END IF;\n"
+                + "    RETURN NULL;\n"
+                + "END\n"
+                + "$$";
+    }
+
+    /**
+     * Same trigger function turned into a fence: every write to the source copy fails
+     * with a serialization error, which the retrying transaction template runs again
+     * (on the new shard once this node or the registry notification has moved the tenant)
+     */
+    private static String fencedCaptureFunction(String schemaName) {
+        return "CREATE OR REPLACE FUNCTION " + qualified(schemaName, CAPTURE_FUNCTION)
+                + "() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "BEGIN\n"
+                + "    RAISE EXCEPTION 'Tenant schema % moved to another shard, retry the transaction', "
+                + "TG_TABLE_SCHEMA USING ERRCODE = '40001';\n"
+                + "END\n"
+                + "$$";
+    }
+
+    /**
+     * Lift the fence, recording changes again (replacing a function takes no table locks)
+     */
+    private void unfence(Connection control, String schemaName) {
+        try (Statement stmt = control.createStatement()) {
+            stmt.execute(captureFunction(schemaName));
+            log.info("Writes to schema {} are accepted again", schemaName);
+        } catch (SQLException e) {
+            log.error("Failed to lift the write fence on schema {}; its writes fail until the fence "
+                    + "function {} is dropped", schemaName, CAPTURE_FUNCTION, e);
+        }
+    }
+
+    /**
+     * Drop the capture triggers, the fence and the recorded changes from the source schema
+     */
+    private void removeCapture(Connection control, String schemaName) throws SQLException {
+        try (Statement stmt = control.createStatement()) {
+            stmt.execute("SET lock_timeout = " + lockTimeoutMillis);
+            try {
+                // Drops the triggers with the functions
+                stmt.execute("DROP FUNCTION IF EXISTS " + qualified(schemaName, CAPTURE_FUNCTION) + "() CASCADE");
+                stmt.execute("DROP FUNCTION IF EXISTS " + qualified(schemaName, FENCE_FUNCTION) + "() CASCADE");
+                stmt.execute("DROP TABLE IF EXISTS " + qualified(schemaName, CHANGES_TABLE));
+            } finally {
+                stmt.execute("RESET lock_timeout");
+            }
+        }
+    }
+
+    /**
+     * Copy every table from one repeatable-read snapshot, streaming COPY output
+     * from the source straight into COPY input on the target in one transaction
+     *
+     * @return Rows copied
+     */
+    private long copyTables(Move move) throws Exception {
+        String schemaName = move.schemaName;
+        try (Connection source = move.sourcePool.getConnection();
+             Connection target = move.targetPool.getConnection()) {
+            source.setAutoCommit(false);
+            target.setAutoCommit(false);
+            try {
+                try (Statement stmt = source.createStatement()) {
+                    stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+                }
+                // Rows seeded by changesets come over with the source data
+                try (Statement stmt = target.createStatement()) {
+                    stmt.execute("TRUNCATE " + String.join(", ", move.tables.stream()
+                            .map(table -> qualified(schemaName, table.name())).toList()));
+                }
+
+                CopyManager sourceCopy = source.unwrap(PGConnection.class).getCopyAPI();
+                CopyManager targetCopy = target.unwrap(PGConnection.class).getCopyAPI();
+                long totalRows = 0;
+                for (TableInfo table : move.tables) {
+                    String copy = "COPY " + qualified(schemaName, table.name()) + " (" + columnList(table.columns()) + ")";
+                    CopyIn in = targetCopy.copyIn(copy + " FROM STDIN (FORMAT binary)");
+                    CopyOut out = null;
+                    try {
+                        out = sourceCopy.copyOut(copy + " TO STDOUT (FORMAT binary)");
+                        for (byte[] chunk = out.readFromCopy(); chunk != null; chunk = out.readFromCopy()) {
+                            in.writeToCopy(chunk, 0, chunk.length);
+                        }
+                        totalRows += in.endCopy();
+                    } finally {
+                        if (out != null && out.isActive()) {
+                            out.cancelCopy();
+                        }
+                        if (in.isActive()) {
+                            in.cancelCopy();
+                        }
+                    }
+                }
+                target.commit();
+                source.commit();
+                log.info("Copied {} rows of schema {} from shard {} to shard {}",
+                        totalRows, schemaName, move.sourceShard, move.targetShard);
+                return totalRows;
+
+            } catch (Exception e) {
+                target.rollback();
+                source.rollback();
+                throw e;
+            } finally {
+                target.setAutoCommit(true);
+                source.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Replay recorded changes until the backlog is within one batch, then switch the
+     * tenant over; a switch that can't get the table locks in time, or whose final
+     * replay would hold writes too long, is rolled back and retried after more catch-up
+     */
+    private void cutOver(Connection control, Move move) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            catchUp(move);
+            try {
+                cutOverAttempt(control, move);
+                return;
+            } catch (CutoverAborted e) {
+                if (attempt >= cutoverAttempts) {
+                    throw new IllegalStateException("Gave up switching schema " + move.schemaName
+                            + " after " + attempt + " attempts: " + e.getMessage(), e);
+                }
+                log.warn("Switch of schema {} to shard {} backed off (attempt {}/{}): {}",
+                        move.schemaName, move.targetShard, attempt, cutoverAttempts, e.getMessage());
+                update(move.relocationId, running -> running.setState(RelocationState.CATCHING_UP));
+            }
+        }
+    }
+
+    private void catchUp(Move move) throws Exception {
+        long deadline = System.currentTimeMillis() + catchUpTimeoutMillis;
+        while (replayBatch(move) >= batchSize) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Replay didn't catch up with the writes to schema "
+                        + move.schemaName + " within " + catchUpTimeoutMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * One switch attempt: lock the tenant's tables, fence the source copy, replay what is
+     * left and commit the fence, and only then point public.tenants at the target. No write
+     * can reach the source after the switch; a switch that doesn't happen lifts the fence.
+     */
+    private void cutOverAttempt(Connection control, Move move) throws Exception {
+        String schemaName = move.schemaName;
+        long lockedAt = 0;
+        boolean fenced = false;
+        control.setAutoCommit(false);
+        try {
+            try (Statement stmt = control.createStatement()) {
+                stmt.execute("SET LOCAL lock_timeout = " + lockTimeoutMillis);
+                // EXCLUSIVE holds the tenant's writes but not its reads; no other tenant is touched
+                try {
+                    stmt.execute("LOCK TABLE " + String.join(", ", move.tables.stream()
+                            .map(table -> qualified(schemaName, table.name())).toList()) + " IN EXCLUSIVE MODE");
+                } catch (SQLException e) {
+                    if (LOCK_NOT_AVAILABLE.equals(e.getSQLState())) {
+                        throw new CutoverAborted("tenant tables stayed locked by other transactions for "
+                                + lockTimeoutMillis + " ms");
+                    }
+                    throw e;
+                }
+                lockedAt = System.nanoTime();
+
+                // Writes queued behind the lock fail when it is released instead of landing in this copy
+                stmt.execute(fencedCaptureFunction(schemaName));
+            }
+            update(move.relocationId, running -> running.setState(RelocationState.CUTTING_OVER));
+
+            int replayed;
+            do {
+                replayed = replayBatch(move);
+                if ((System.nanoTime() - lockedAt) / 1_000_000 > maxWritePauseMillis) {
+                    throw new CutoverAborted("final replay took longer than " + maxWritePauseMillis + " ms");
+                }
+            } while (replayed > 0);
+
+            try (Connection target = move.targetPool.getConnection()) {
+                TenantArchiveService.alignSequences(target, schemaName);
+            }
+
+            control.commit();
+            fenced = true;
+        } finally {
+            if (!fenced) {
+                control.rollback();
+            }
+            control.setAutoCommit(true);
+            if (!fenced && lockedAt != 0) {
+                log.info("Writes to schema {} were held for {} ms (switch rolled back)",
+                        schemaName, (System.nanoTime() - lockedAt) / 1_000_000);
+            }
+        }
+
+        try {
+            // Other nodes follow through the registry's change notification
+            if (tenantRepository.moveShard(schemaName, move.sourceShard, move.targetShard) == 0) {
+                throw new IllegalStateException("Tenant " + move.tenantId + " is no longer on shard " + move.sourceShard);
+            }
+        } catch (RuntimeException e) {
+            unfence(control, schemaName);
+            throw e;
+        }
+        routingDataSource.assignShard(schemaName, move.targetShard);
+
+        long pauseMillis = (System.nanoTime() - lockedAt) / 1_000_000;
+        update(move.relocationId, running -> running.setWritePauseMillis(pauseMillis));
+        log.info("Writes to schema {} were held for {} ms", schemaName, pauseMillis);
+    }
+
+    /**
+     * Replay the oldest recorded changes: rows still in the source are upserted on the
+     * target, rows gone from it are deleted. Keys and rows are read in one snapshot, so
+     * a batch is consistent across tables; the recorded changes are removed once applied.
+     * Changes of transactions still open are picked up by a later batch.
+     *
+     * @return Recorded changes consumed
+     */
+    private int replayBatch(Move move) throws Exception {
+        String schemaName = move.schemaName;
+        List<Long> ids = new ArrayList<>();
+        Map<String, Set<String>> keysByTable = new LinkedHashMap<>();
+        Map<String, Map<String, String>> rowsByTable = new HashMap<>();
+
+        try (Connection source = move.sourcePool.getConnection()) {
+            source.setAutoCommit(false);
+            try {
+                try (Statement stmt = source.createStatement()) {
+                    stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+                }
+                try (PreparedStatement ps = source.prepareStatement("SELECT id, table_name, pk::text FROM "
+                        + qualified(schemaName, CHANGES_TABLE) + " ORDER BY id LIMIT ?")) {
+                    ps.setInt(1, batchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong(1));
+                            keysByTable.computeIfAbsent(rs.getString(2), table -> new LinkedHashSet<>()).add(rs.getString(3));
+                        }
+                    }
+                }
+
+                for (Map.Entry<String, Set<String>> entry : keysByTable.entrySet()) {
+                    TableInfo table = move.table(entry.getKey());
+                    String relation = qualified(schemaName, table.name());
+                    Map<String, String> rows = new HashMap<>();
+                    try (PreparedStatement ps = source.prepareStatement("SELECT " + keyObject(table, "t")
+                            + "::text, to_jsonb(t)::text FROM " + relation + " t "
+                            + "JOIN jsonb_populate_recordset(NULL::" + relation + ", ?::jsonb) k ON " + keyJoin(table))) {
+                        ps.setString(1, jsonArray(entry.getValue()));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                rows.put(rs.getString(1), rs.getString(2));
+                            }
+                        }
+                    }
+                    rowsByTable.put(table.name(), rows);
+                }
+                source.commit();
+
+            } catch (Exception e) {
+                source.rollback();
+                throw e;
+            } finally {
+                source.setAutoCommit(true);
+            }
+        }
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        try (Connection target = move.targetPool.getConnection()) {
+            target.setAutoCommit(false);
+            try {
+                try {
+                    applyBatch(target, move, keysByTable, rowsByTable, true);
+                } catch (SQLException e) {
+                    if (!FOREIGN_KEY_VIOLATION.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    // A parent deleted in this batch is still referenced by a child the batch
+                    // re-points; with a non-deferrable key only the reverse order gets through
+                    target.rollback();
+                    applyBatch(target, move, keysByTable, rowsByTable, false);
+                }
+                target.commit();
+
+            } catch (Exception e) {
+                target.rollback();
+                throw e;
+            } finally {
+                target.setAutoCommit(true);
+            }
+        }
+
+        try (Connection source = move.sourcePool.getConnection();
+             PreparedStatement ps = source.prepareStatement("DELETE FROM "
+                     + qualified(schemaName, CHANGES_TABLE) + " WHERE id = ANY (?)")) {
+            ps.setArray(1, source.createArrayOf("bigint", ids.toArray()));
+            ps.executeUpdate();
+        }
+
+        move.changesReplayed += keysByTable.values().stream().mapToInt(Set::size).sum();
+        update(move.relocationId, running -> running.setChangesReplayed(move.changesReplayed));
+        return ids.size();
+    }
+
+    /**
+     * Apply one batch on the target. Deletes go first, so a unique value freed by a
+     * deleted row can be taken by an upserted one; they run children first, upserts
+     * parents first. Deferrable constraints are only checked at commit.
+     */
+    private void applyBatch(Connection target, Move move, Map<String, Set<String>> keysByTable,
+                            Map<String, Map<String, String>> rowsByTable, boolean deletesFirst) throws SQLException {
+        String schemaName = move.schemaName;
+        try (Statement stmt = target.createStatement()) {
+            stmt.execute("SET CONSTRAINTS ALL DEFERRED");
+        }
+        if (!deletesFirst) {
+            upsertAll(target, move, rowsByTable);
+        }
+        for (int i = move.tables.size() - 1; i >= 0; i--) {
+            TableInfo table = move.tables.get(i);
+            Set<String> keys = keysByTable.get(table.name());
+            if (keys == null) {
+                continue;
+            }
+            List<String> deleted = keys.stream()
+                    .filter(key -> !rowsByTable.get(table.name()).containsKey(key))
+                    .toList();
+            if (!deleted.isEmpty()) {
+                delete(target, schemaName, table, deleted);
+            }
+        }
+        if (deletesFirst) {
+            upsertAll(target, move, rowsByTable);
+        }
+    }
+
+    private void upsertAll(Connection target, Move move, Map<String, Map<String, String>> rowsByTable)
+            throws SQLException {
+        for (TableInfo table : move.tables) {
+            Map<String, String> rows = rowsByTable.get(table.name());
+            if (rows != null && !rows.isEmpty()) {
+                upsert(target, move.schemaName, table, rows.values());
+            }
+        }
+    }
+
+    private void upsert(Connection target, String schemaName, TableInfo table, Iterable<String> rows) throws SQLException {
+        String relation = qualified(schemaName, table.name());
+        List<String> updated = table.columns().stream().filter(column -> !table.keys().contains(column)).toList();
+        String onConflict = updated.isEmpty()
+                ? "DO NOTHING"
+                : "DO UPDATE SET " + String.join(", ", updated.stream()
+                        .map(column -> quote(column) + " = EXCLUDED." + quote(column)).toList());
+        try (PreparedStatement ps = target.prepareStatement("INSERT INTO " + relation
+                + " (" + columnList(table.columns()) + ") OVERRIDING SYSTEM VALUE SELECT " + columnList(table.columns())
+                + " FROM jsonb_populate_recordset(NULL::" + relation + ", ?::jsonb) "
+                + "ON CONFLICT (" + columnList(table.keys()) + ") " + onConflict)) {
+            ps.setString(1, jsonArray(rows));
+            ps.executeUpdate();
+        }
+    }
+
+    private void delete(Connection target, String schemaName, TableInfo table, List<String> keys) throws SQLException {
+        String relation = qualified(schemaName, table.name());
+        try (PreparedStatement ps = target.prepareStatement("DELETE FROM " + relation + " t "
+                + "USING jsonb_populate_recordset(NULL::" + relation + ", ?::jsonb) k WHERE " + keyJoin(table))) {
+            ps.setString(1, jsonArray(keys));
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Key of a row as the capture trigger records it (same jsonb, so the same text)
+     */
+    private static String keyObject(TableInfo table, String alias) {
+        return "jsonb_build_object(" + String.join(", ", table.keys().stream()
+                .map(key -> "'" + key.replace("'", "''") + "', " + alias + "." + quote(key)).toList()) + ")";
+    }
+
+    private static String keyJoin(TableInfo table) {
+        return String.join(" AND ", table.keys().stream()
+                .map(key -> "t." + quote(key) + " = k." + quote(key)).toList());
+    }
+
+    private static String jsonArray(Iterable<String> objects) {
+        return "[" + String.join(",", objects) + "]";
+    }
+
+    private void lockSchema(Connection connection, String schemaName) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+            ps.setInt(1, MultiTenantLiquibaseService.ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, MultiTenantLiquibaseService.advisoryLockKey(schemaName));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !rs.getBoolean(1)) {
+                    throw new IllegalStateException("Schema " + schemaName + " is being migrated, try again later");
+                }
+            }
+        }
+    }
+
+    private void dropTargetSchema(Move move) throws SQLException {
+        try (Connection target = move.targetPool.getConnection();
+             Statement stmt = target.createStatement()) {
+            stmt.execute("DROP SCHEMA IF EXISTS " + quote(move.schemaName) + " CASCADE");
+        }
+    }
+
+    /**
+     * Drop the old copy after cleanup-delay-ms, once reads still running on it are done,
+     * without holding a relocation thread for the wait
+     */
+    private void scheduleSourceDrop(Move move) {
+        try {
+            taskScheduler.schedule(() -> {
+                try {
+                    dropSourceSchema(move);
+                    finish(move.relocationId, RelocationState.SUCCEEDED, null);
+                } finally {
+                    runningHere.remove(move.relocationId);
+                }
+            }, Instant.now().plusMillis(cleanupDelayMillis));
+        } catch (RuntimeException e) {
+            // Node shutting down: left CLEANING_UP, the recovery check drops it later
+            runningHere.remove(move.relocationId);
+            log.warn("Failed to schedule the drop of schema {} from shard {}, leaving it to be settled",
+                    move.schemaName, move.sourceShard, e);
+        }
+    }
+
+    /**
+     * Drop the old copy (a failure here leaves the tenant served from the target,
+     * with a stray schema on the source)
+     */
+    private void dropSourceSchema(Move move) {
+        try (Connection source = move.sourcePool.getConnection();
+             Statement stmt = source.createStatement()) {
+            stmt.execute("SET lock_timeout = " + lockTimeoutMillis);
+            try {
+                stmt.execute("DROP SCHEMA IF EXISTS " + quote(move.schemaName) + " CASCADE");
+            } finally {
+                stmt.execute("RESET lock_timeout");
+            }
+            log.info("Dropped schema {} from shard {}", move.schemaName, move.sourceShard);
+        } catch (SQLException e) {
+            log.warn("Failed to drop schema {} from shard {} after relocation; drop it by hand",
+                    move.schemaName, move.sourceShard, e);
+        }
+    }
+
+    private void update(String relocationId, Consumer<TenantRelocation> change) {
+        relocationRepository.findById(relocationId).ifPresent(relocation -> {
+            change.accept(relocation);
+            relocationRepository.save(relocation);
+        });
+    }
+
+    private void finish(String relocationId, RelocationState state, String error) {
+        update(relocationId, relocation -> {
+            Instant finishedAt = Instant.now();
+            relocation.setState(state);
+            relocation.setFinishedAt(finishedAt);
+            if (relocation.getStartedAt() != null) {
+                relocation.setDurationMillis(Duration.between(relocation.getStartedAt(), finishedAt).toMillis());
+            }
+            relocation.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.relocation.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (!runningHere.isEmpty()) {
+            relocationRepository.heartbeat(nodeId, Instant.now(), FINISHED);
+        }
+    }
+
+    /**
+     * Take over unfinished relocations left behind by a dead node or by this node before
+     * a restart, and finish or clean them up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.relocation.recovery-check-interval-ms:60000}",
+            initialDelayString = "${realtygen.tenancy.relocation.recovery-check-interval-ms:60000}")
+    public void recoverOrphanedRelocations() {
+        try {
+            Instant now = Instant.now();
+            Instant staleBefore = now.minusMillis(heartbeatLeaseMillis);
+            for (TenantRelocation relocation : relocationRepository.findByStateNotInOrderBySubmittedAt(FINISHED)) {
+                if (runningHere.contains(relocation.getRelocationId())) {
+                    continue;
+                }
+                if (relocationRepository.claimStale(relocation.getRelocationId(), nodeId, now, staleBefore, FINISHED) == 1) {
+                    log.info("Taking over relocation {} of tenant {} previously owned by {}",
+                            relocation.getRelocationId(), relocation.getTenantId(), relocation.getOwnerNode());
+                    submit(relocation);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check for orphaned relocations", e);
+        }
+    }
+
+    /**
+     * Drop finished relocations older than the retention window
+     */
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.relocation.eviction-interval-ms:300000}")
+    public void evictFinishedRelocations() {
+        relocationRepository.deleteFinishedBefore(FINISHED, Instant.now().minus(Duration.ofMinutes(retentionMinutes)));
+    }
+
+    private record TableInfo(String name, List<String> columns, List<String> keys) {
+    }
+
+    /**
+     * State of one relocation while it runs
+     */
+    private static final class Move {
+
+        private final String relocationId;
+        private final String tenantId;
+        private final String schemaName;
+        private final String sourceShard;
+        private final String targetShard;
+        private final HikariDataSource sourcePool;
+        private final HikariDataSource targetPool;
+
+        private List<TableInfo> tables = List.of();
+        private Map<String, TableInfo> tablesByName = Map.of();
+        private long rowsCopied;
+        private long changesReplayed;
+
+        Move(TenantRelocation relocation, HikariDataSource sourcePool, HikariDataSource targetPool) {
+            this.relocationId = relocation.getRelocationId();
+            this.tenantId = relocation.getTenantId();
+            this.schemaName = relocation.getSchemaName();
+            this.sourceShard = relocation.getSourceShard();
+            this.targetShard = relocation.getTargetShard();
+            this.sourcePool = sourcePool;
+            this.targetPool = targetPool;
+        }
+
+        void describe(List<TableInfo> tables) {
+            this.tables = tables;
+            Map<String, TableInfo> byName = new HashMap<>();
+            tables.forEach(table -> byName.put(table.name(), table));
+            this.tablesByName = byName;
+        }
+
+        TableInfo table(String name) {
+            TableInfo table = tablesByName.get(name);
+            if (table == null) {
+                throw new IllegalStateException("Change recorded for unknown table " + schemaName + "." + name);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Switch attempt given up before anything was changed; retried after more catch-up
+     */
+    private static final class CutoverAborted extends Exception {
+
+        CutoverAborted(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.enums.ProvisioningMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Builds new tenant schemas at the current changelog version
+ * using the configured provisioning mode
+ */
+@Slf4j
+@Service
+public class TenantSchemaBuilder {
+
+    @Value("${realtygen.tenancy.provisioning.mode:liquibase}")
+    private ProvisioningMode provisioningMode;
+
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final TenantTemplateService templateService;
+    private final TenantRoutingDataSource routingDataSource;
+
+    public TenantSchemaBuilder(MultiTenantLiquibaseService liquibaseService,
+                               TenantTemplateService templateService,
+                               TenantRoutingDataSource routingDataSource) {
+        this.liquibaseService = liquibaseService;
+        this.templateService = templateService;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Bring the template schema to head at startup so the first signup doesn't pay for it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareTemplate() {
+        if (provisioningMode != ProvisioningMode.TEMPLATE) {
+            return;
+        }
+        try {
+            templateService.ensureTemplateUpToDate();
+        } catch (Exception e) {
+            log.warn("Could not prepare template schema, it will be retried on first provisioning", e);
+        }
+    }
+
+    /**
+     * True when new schemas are cloned from the template rather than created and migrated
+     */
+    public boolean usesTemplate() {
+        return provisioningMode == ProvisioningMode.TEMPLATE && templateService.isCloneable();
+    }
+
+    /**
+     * Build a new tenant schema at the current changelog version
+     * Template mode copies the template schema; it falls back to Liquibase
+     * when the template holds objects the cloner cannot copy, and for schemas
+     * on other shards than the primary (where the template lives)
+     */
+    public void build(String tenantId, String schemaName) {
+        if (provisioningMode == ProvisioningMode.TEMPLATE && routingDataSource.isOnPrimaryShard(schemaName)) {
+            if (templateService.isCloneable()) {
+                templateService.cloneTemplate(schemaName);
+                return;
+            }
+            log.warn("Template schema is not cloneable, provisioning tenant {} with Liquibase", tenantId);
+        }
+
+        // Run Liquibase migration to create schema and tables
+        liquibaseService.migrateSchema(tenantId, schemaName);
+    }
+}
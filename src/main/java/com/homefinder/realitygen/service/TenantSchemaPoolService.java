@@ -0,0 +1,174 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warm pool of already-migrated, unassigned tenant schemas
+ * Provisioning claims a pooled schema and renames it instead of building one
+ * inside the request; a scheduled keeper refills the pool in the background
+ */
+@Slf4j
+@Service
+public class TenantSchemaPoolService {
+
+    private static final String POOL_SCHEMA_PREFIX = "tenant_pool_";
+
+    @Value("${realtygen.tenancy.warm-pool.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * Number of ready schemas the keeper maintains
+     */
+    @Value("${realtygen.tenancy.warm-pool.size:10}")
+    private int targetSize;
+
+    /**
+     * Maximum schemas built or upgraded per keeper run (the refill rate)
+     */
+    @Value("${realtygen.tenancy.warm-pool.refill-batch-size:2}")
+    private int refillBatchSize;
+
+    /**
+     * Ready schema count below which the keeper logs a warning
+     */
+    @Value("${realtygen.tenancy.warm-pool.low-water-mark:3}")
+    private int lowWaterMark;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TenantRepository tenantRepository;
+    private final TenantSchemaBuilder schemaBuilder;
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final TenantSchemaVersionService schemaVersionService;
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    public TenantSchemaPoolService(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   TenantRepository tenantRepository,
+                                   TenantSchemaBuilder schemaBuilder,
+                                   MultiTenantLiquibaseService liquibaseService,
+                                   TenantSchemaVersionService schemaVersionService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.tenantRepository = tenantRepository;
+        this.schemaBuilder = schemaBuilder;
+        this.liquibaseService = liquibaseService;
+        this.schemaVersionService = schemaVersionService;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Claim a ready schema for the tenant: remove it from the pool, rename it
+     * to the tenant's schema name and insert the tenant row, all in one transaction
+     *
+     * @param tenant Tenant to assign, with its schema name set
+     * @return Saved tenant, or empty if no schema at the current version is available
+     */
+    public Optional<Tenant> claim(Tenant tenant) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String changelogHash = schemaVersionService.currentChangeLogHash();
+
+        Optional<Tenant> claimed = transactionTemplate.execute(status -> {
+            List<String> pooled = jdbcTemplate.queryForList(
+                    "DELETE FROM public.tenant_schema_pool WHERE schema_name = ("
+                            + "SELECT schema_name FROM public.tenant_schema_pool WHERE changelog_hash = ? "
+                            + "ORDER BY created_at LIMIT 1 FOR UPDATE SKIP LOCKED) RETURNING schema_name",
+                    String.class, changelogHash);
+            if (pooled.isEmpty()) {
+                return Optional.empty();
+            }
+
+            jdbcTemplate.execute("ALTER SCHEMA " + pooled.get(0) + " RENAME TO " + tenant.getSchemaName());
+            tenant.setChangelogHash(changelogHash);
+            tenant.setSchemaMigratedAt(Instant.now());
+            log.info("Claimed pooled schema {} as {} for tenant {}",
+                    pooled.get(0), tenant.getSchemaName(), tenant.getTenantId());
+            return Optional.of(tenantRepository.save(tenant));
+        });
+
+        if (claimed == null || claimed.isEmpty()) {
+            log.warn("Warm schema pool is empty, tenant {} will be provisioned inline", tenant.getTenantId());
+            return Optional.empty();
+        }
+        return claimed;
+    }
+
+    /**
+     * Number of pooled schemas ready at the current changelog version
+     */
+    public int availableSchemas() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM public.tenant_schema_pool WHERE changelog_hash = ?",
+                Integer.class, schemaVersionService.currentChangeLogHash());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Keeper run: upgrade pooled schemas left behind by a changelog change,
+     * then build new ones up to the target size, at most refill-batch-size per run
+     */
+    @Scheduled(fixedDelayString = "${realtygen.tenancy.warm-pool.refill-interval-ms:30000}",
+            initialDelayString = "${realtygen.tenancy.warm-pool.initial-delay-ms:10000}")
+    public void refill() {
+        if (!enabled || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            String changelogHash = schemaVersionService.currentChangeLogHash();
+            int budget = refillBatchSize;
+
+            List<String> stale = jdbcTemplate.queryForList(
+                    "SELECT schema_name FROM public.tenant_schema_pool WHERE changelog_hash <> ? "
+                            + "ORDER BY created_at LIMIT ?",
+                    String.class, changelogHash, budget);
+            for (String schemaName : stale) {
+                liquibaseService.migrateSchema("pool", schemaName);
+                jdbcTemplate.update("UPDATE public.tenant_schema_pool SET changelog_hash = ? WHERE schema_name = ?",
+                        changelogHash, schemaName);
+                budget--;
+            }
+
+            int available = availableSchemas();
+            int toCreate = Math.min(budget, targetSize - available);
+            for (int i = 0; i < toCreate; i++) {
+                String schemaName = POOL_SCHEMA_PREFIX + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+                schemaBuilder.build("pool", schemaName);
+                jdbcTemplate.update("INSERT INTO public.tenant_schema_pool (schema_name, changelog_hash) VALUES (?, ?)",
+                        schemaName, changelogHash);
+                available++;
+            }
+
+            if (available < lowWaterMark) {
+                log.warn("Warm schema pool below low-water mark: {} ready, low-water {}, target {}",
+                        available, lowWaterMark, targetSize);
+            } else if (toCreate > 0 || !stale.isEmpty()) {
+                log.info("Warm schema pool refilled: {} ready (target {})", available, targetSize);
+            }
+
+        } catch (Exception e) {
+            log.error("Warm schema pool refill failed", e);
+        } finally {
+            refilling.set(false);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.ChangeLogCache;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.repository.TenantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Tracks which changelog version each tenant schema is at
+ * The stamp lives in public.tenants.changelog_hash and is compared against
+ * the hash of the changelog bundled with this application version
+ */
+@Slf4j
+@Service
+public class TenantSchemaVersionService {
+
+    private final ChangeLogCache changeLogCache;
+    private final TenantRepository tenantRepository;
+
+    public TenantSchemaVersionService(ChangeLogCache changeLogCache, TenantRepository tenantRepository) {
+        this.changeLogCache = changeLogCache;
+        this.tenantRepository = tenantRepository;
+    }
+
+    public String currentChangeLogHash() {
+        return changeLogCache.getChangeLogHash();
+    }
+
+    /**
+     * True when the tenant schema was last migrated with the current changelog
+     */
+    public boolean isUpToDate(Tenant tenant) {
+        return currentChangeLogHash().equals(tenant.getChangelogHash());
+    }
+
+    /**
+     * True when a rollback left the schema behind on purpose; only an explicit update moves it on
+     */
+    public boolean isPinned(Tenant tenant) {
+        return Boolean.TRUE.equals(tenant.getSchemaPinned());
+    }
+
+    /**
+     * Forget the schema's version after a rollback, so the next update runs Liquibase, and
+     * pin it so lazy migration doesn't undo the rollback
+     */
+    public void markRolledBack(String schemaName) {
+        tenantRepository.pinRolledBackSchema(schemaName);
+    }
+
+    /**
+     * Record that the schema is at the given changelog version (and unpin it)
+     */
+    public void markUpToDate(String schemaName, String changelogHash) {
+        int updated = tenantRepository.updateSchemaVersion(schemaName, changelogHash, Instant.now());
+        if (updated == 0) {
+            log.debug("No tenant row for schema {}, version stamp not recorded", schemaName);
+        }
+    }
+}
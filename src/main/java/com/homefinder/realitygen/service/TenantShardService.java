@@ -0,0 +1,106 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.enums.TeardownStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Placement of tenant schemas on shards (databases)
+ * New tenants go to the shard holding the fewest tenant schemas, counted from the
+ * tenant registry, so placement costs no query
+ */
+@Slf4j
+@Service
+public class TenantShardService {
+
+    /**
+     * Shards that keep their tenants but receive no new ones (e.g. a crowded primary)
+     */
+    @Value("${realtygen.sharding.placement.excluded-shards:}")
+    private Set<String> excludedShards;
+
+    private final TenantRegistry tenantRegistry;
+    private final TenantRoutingDataSource routingDataSource;
+
+    public TenantShardService(TenantRegistry tenantRegistry, TenantRoutingDataSource routingDataSource) {
+        this.tenantRegistry = tenantRegistry;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Tenant schemas per shard (schemas already dropped don't count)
+     */
+    public Map<String, Integer> shardLoads() {
+        Map<String, Integer> loads = new LinkedHashMap<>();
+        routingDataSource.shardIds().forEach(shardId -> loads.put(shardId, 0));
+        for (Tenant tenant : tenantRegistry.tenants()) {
+            if (tenant.getTeardownStatus() != TeardownStatus.DROPPED) {
+                loads.merge(tenant.getShardId(), 1, Integer::sum);
+            }
+        }
+        return loads;
+    }
+
+    /**
+     * Pick the least loaded shard for a new schema and route the schema to it
+     * The route only holds until the tenant row is written; release it if provisioning fails
+     *
+     * @return The shard id
+     */
+    public String placeNewSchema(String schemaName) {
+        return placeNewSchemas(List.of(schemaName)).get(schemaName);
+    }
+
+    /**
+     * Spread new schemas over the least loaded shards, counting each placement as it is made
+     *
+     * @return Shard id by schema name
+     * @throws IllegalStateException if a schema belongs to an existing tenant (nothing is placed)
+     */
+    public Map<String, String> placeNewSchemas(List<String> schemaNames) {
+        for (String schemaName : schemaNames) {
+            // Re-routing an existing schema would send its tenant to an empty database
+            if (tenantRegistry.findBySchemaName(schemaName).isPresent()) {
+                throw new IllegalStateException("Schema " + schemaName + " already belongs to a tenant");
+            }
+        }
+        Map<String, Integer> loads = shardLoads();
+        loads.keySet().removeAll(excludedShards);
+        if (loads.isEmpty()) {
+            throw new IllegalStateException("Every shard is excluded from placement");
+        }
+
+        Map<String, String> placements = new LinkedHashMap<>();
+        for (String schemaName : schemaNames) {
+            String shardId = null;
+            for (Map.Entry<String, Integer> load : loads.entrySet()) {
+                if (shardId == null || load.getValue() < loads.get(shardId)) {
+                    shardId = load.getKey();
+                }
+            }
+            loads.merge(shardId, 1, Integer::sum);
+            routingDataSource.assignShard(schemaName, shardId);
+            placements.put(schemaName, shardId);
+        }
+        if (routingDataSource.shardIds().size() > 1) {
+            log.debug("Placed {} new schemas: {}", placements.size(), placements);
+        }
+        return placements;
+    }
+
+    /**
+     * Drop the routes of placed schemas whose tenant rows were never written
+     */
+    public void releasePlacements(Collection<String> schemaNames) {
+        schemaNames.forEach(routingDataSource::releaseShard);
+    }
+}
@@ -0,0 +1,337 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.ChangeLogCache;
+import com.homefinder.realitygen.config.MultiTenantLiquibaseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps a template schema migrated to the latest changelog and stamps
+ * new tenant schemas out of it by copying tables, sequences, seed rows,
+ * foreign keys and the databasechangelog history in one transaction
+ *
+ * Only tables and sequences are cloned; a template containing views,
+ * functions, triggers or custom types is reported as not cloneable
+ */
+@Slf4j
+@Service
+public class TenantTemplateService {
+
+    @Value("${realtygen.tenancy.template.schema:tenant_template}")
+    private String templateSchema;
+
+    private final DataSource dataSource;
+    private final MultiTenantLiquibaseService liquibaseService;
+    private final ChangeLogCache changeLogCache;
+
+    private final ReentrantReadWriteLock templateLock = new ReentrantReadWriteLock();
+
+    private volatile String templateHash;
+    private volatile String unsupportedReason;
+
+    public TenantTemplateService(DataSource dataSource,
+                                 MultiTenantLiquibaseService liquibaseService,
+                                 ChangeLogCache changeLogCache) {
+        this.dataSource = dataSource;
+        this.liquibaseService = liquibaseService;
+        this.changeLogCache = changeLogCache;
+    }
+
+    /**
+     * Migrate the template schema if it is behind the current changelog
+     */
+    public void ensureTemplateUpToDate() {
+        String hash = changeLogCache.getChangeLogHash();
+        if (hash.equals(templateHash)) {
+            return;
+        }
+
+        templateLock.writeLock().lock();
+        try {
+            if (hash.equals(templateHash)) {
+                return;
+            }
+            liquibaseService.migrateSchema("template", templateSchema);
+            unsupportedReason = findUnsupportedObjects();
+            if (unsupportedReason != null) {
+                log.warn("Template schema {} cannot be cloned: {}", templateSchema, unsupportedReason);
+            }
+            templateHash = hash;
+            log.info("Template schema {} is at changelog {}", templateSchema, hash);
+        } finally {
+            templateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * True when the migrated template only holds objects the cloner can copy
+     */
+    public boolean isCloneable() {
+        ensureTemplateUpToDate();
+        return unsupportedReason == null;
+    }
+
+    /**
+     * Create a new schema as a copy of the template
+     *
+     * @param schemaName Name of the schema to create, must not exist yet
+     */
+    public void cloneTemplate(String schemaName) {
+        ensureTemplateUpToDate();
+        if (unsupportedReason != null) {
+            throw new IllegalStateException("Template schema cannot be cloned: " + unsupportedReason);
+        }
+
+        log.info("Cloning template schema {} into {}", templateSchema, schemaName);
+        long start = System.nanoTime();
+
+        templateLock.readLock().lock();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                copySchema(connection, schemaName);
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+
+            log.info("Cloned template into schema {} in {} ms", schemaName, (System.nanoTime() - start) / 1_000_000);
+
+        } catch (Exception e) {
+            log.error("Failed to clone template schema into {}", schemaName, e);
+            throw new RuntimeException("Template clone failed for schema: " + schemaName, e);
+        } finally {
+            templateLock.readLock().unlock();
+        }
+    }
+
+    private void copySchema(Connection connection, String schemaName) throws SQLException {
+        String target = quote(schemaName);
+        String source = quote(templateSchema);
+
+        // Read catalog definitions with the template on the search path so
+        // generated expressions come back unqualified and resolve in the target
+        // Shared advisory lock: no node may migrate the template while it is copied
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_xact_lock_shared(?, ?)")) {
+            ps.setInt(1, MultiTenantLiquibaseService.ADVISORY_LOCK_NAMESPACE);
+            ps.setInt(2, MultiTenantLiquibaseService.advisoryLockKey(templateSchema));
+            ps.execute();
+        }
+
+        setLocalSearchPath(connection, templateSchema);
+        List<String> tables = queryStrings(connection,
+                "SELECT c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND c.relkind = 'r' ORDER BY c.relname");
+        List<String[]> sequences = querySequences(connection);
+        List<String[]> sequenceDefaults = queryRows(connection,
+                "SELECT c.relname, a.attname, pg_get_expr(d.adbin, d.adrelid) "
+                        + "FROM pg_attrdef d "
+                        + "JOIN pg_attribute a ON a.attrelid = d.adrelid AND a.attnum = d.adnum "
+                        + "JOIN pg_class c ON c.oid = d.adrelid "
+                        + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                        + "WHERE n.nspname = ? AND pg_get_expr(d.adbin, d.adrelid) LIKE 'nextval(%'", 3);
+        List<String[]> ownedSequences = queryRows(connection,
+                "SELECT s.relname, t.relname, a.attname FROM pg_depend d "
+                        + "JOIN pg_class s ON s.oid = d.objid AND s.relkind = 'S' "
+                        + "JOIN pg_class t ON t.oid = d.refobjid "
+                        + "JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = d.refobjsubid "
+                        + "JOIN pg_namespace n ON n.oid = s.relnamespace "
+                        + "WHERE n.nspname = ? AND d.deptype = 'a'", 3);
+        List<String[]> foreignKeys = queryRows(connection,
+                "SELECT c.relname, con.conname, pg_get_constraintdef(con.oid) FROM pg_constraint con "
+                        + "JOIN pg_class c ON c.oid = con.conrelid "
+                        + "JOIN pg_namespace n ON n.oid = con.connamespace "
+                        + "WHERE n.nspname = ? AND con.contype = 'f' ORDER BY c.relname, con.conname", 3);
+
+        setLocalSearchPath(connection, schemaName);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE SCHEMA " + target);
+
+            for (String[] sequence : sequences) {
+                stmt.execute("CREATE SEQUENCE " + target + "." + quote(sequence[0]) + sequence[1]);
+                if (sequence[2] != null) {
+                    stmt.execute("SELECT setval('" + target + "." + quote(sequence[0]) + "', " + sequence[2] + ", true)");
+                }
+            }
+
+            for (String table : tables) {
+                stmt.execute("CREATE TABLE " + target + "." + quote(table)
+                        + " (LIKE " + source + "." + quote(table) + " INCLUDING ALL)");
+            }
+
+            for (String[] columnDefault : sequenceDefaults) {
+                stmt.execute("ALTER TABLE " + target + "." + quote(columnDefault[0])
+                        + " ALTER COLUMN " + quote(columnDefault[1]) + " SET DEFAULT " + columnDefault[2]);
+            }
+
+            for (String[] owned : ownedSequences) {
+                stmt.execute("ALTER SEQUENCE " + target + "." + quote(owned[0])
+                        + " OWNED BY " + target + "." + quote(owned[1]) + "." + quote(owned[2]));
+            }
+        }
+
+        // Seed rows and databasechangelog history
+        for (String table : tables) {
+            String columns = String.join(", ", insertableColumns(connection, table));
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("INSERT INTO " + target + "." + quote(table) + " (" + columns + ") "
+                        + "OVERRIDING SYSTEM VALUE SELECT " + columns + " FROM " + source + "." + quote(table));
+            }
+        }
+        alignIdentitySequences(connection, schemaName);
+
+        try (Statement stmt = connection.createStatement()) {
+            for (String[] foreignKey : foreignKeys) {
+                stmt.execute("ALTER TABLE " + target + "." + quote(foreignKey[0])
+                        + " ADD CONSTRAINT " + quote(foreignKey[1]) + " " + foreignKey[2]);
+            }
+        }
+    }
+
+    /**
+     * Standalone and serial sequences with their CREATE options and current value
+     * (identity sequences are recreated by LIKE ... INCLUDING ALL)
+     */
+    private List<String[]> querySequences(Connection connection) throws SQLException {
+        String sql = "SELECT s.sequencename, s.data_type, s.start_value, s.min_value, s.max_value, "
+                + "s.increment_by, s.cycle, s.cache_size, s.last_value "
+                + "FROM pg_sequences s "
+                + "JOIN pg_namespace n ON n.nspname = s.schemaname "
+                + "JOIN pg_class c ON c.relname = s.sequencename AND c.relnamespace = n.oid "
+                + "WHERE s.schemaname = ? "
+                + "AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = c.oid AND d.deptype = 'i')";
+        List<String[]> sequences = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, templateSchema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String options = " AS " + rs.getString("data_type")
+                            + " INCREMENT BY " + rs.getLong("increment_by")
+                            + " MINVALUE " + rs.getLong("min_value")
+                            + " MAXVALUE " + rs.getLong("max_value")
+                            + " START WITH " + rs.getLong("start_value")
+                            + " CACHE " + rs.getLong("cache_size")
+                            + (rs.getBoolean("cycle") ? " CYCLE" : " NO CYCLE");
+                    sequences.add(new String[]{rs.getString("sequencename"), options, rs.getString("last_value")});
+                }
+            }
+        }
+        return sequences;
+    }
+
+    private List<String> insertableColumns(Connection connection, String table) throws SQLException {
+        String sql = "SELECT a.attname FROM pg_attribute a "
+                + "JOIN pg_class c ON c.oid = a.attrelid "
+                + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE n.nspname = ? AND c.relname = ? AND a.attnum > 0 "
+                + "AND NOT a.attisdropped AND a.attgenerated = '' ORDER BY a.attnum";
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, templateSchema);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(quote(rs.getString(1)));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private void alignIdentitySequences(Connection connection, String schemaName) throws SQLException {
+        String sql = "SELECT c.relname, a.attname FROM pg_attribute a "
+                + "JOIN pg_class c ON c.oid = a.attrelid "
+                + "JOIN pg_namespace n ON n.oid = c.relnamespace "
+                + "WHERE n.nspname = ? AND a.attidentity <> '' AND NOT a.attisdropped";
+        for (String[] column : queryRows(connection, sql, 2)) {
+            String source = quote(templateSchema) + "." + quote(column[0]);
+            String target = quote(schemaName) + "." + quote(column[0]);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT setval(pg_get_serial_sequence(?, ?), v, true) "
+                            + "FROM pg_sequence_last_value(pg_get_serial_sequence(?, ?)::regclass) v "
+                            + "WHERE v IS NOT NULL")) {
+                ps.setString(1, target);
+                ps.setString(2, column[1]);
+                ps.setString(3, source);
+                ps.setString(4, column[1]);
+                ps.execute();
+            }
+        }
+    }
+
+    /**
+     * Describe template objects the cloner does not copy, or null if there are none
+     */
+    private String findUnsupportedObjects() {
+        String sql = "SELECT "
+                + "(SELECT count(*) FROM pg_class c WHERE c.relnamespace = n.oid AND c.relkind IN ('v', 'm', 'p', 'f')), "
+                + "(SELECT count(*) FROM pg_proc p WHERE p.pronamespace = n.oid), "
+                + "(SELECT count(*) FROM pg_trigger t JOIN pg_class c ON c.oid = t.tgrelid "
+                + "   WHERE c.relnamespace = n.oid AND NOT t.tgisinternal), "
+                + "(SELECT count(*) FROM pg_type t WHERE t.typnamespace = n.oid AND t.typtype IN ('e', 'd', 'r', 'm')) "
+                + "FROM pg_namespace n WHERE n.nspname = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, templateSchema);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return "template schema does not exist";
+                }
+                List<String> unsupported = new ArrayList<>();
+                if (rs.getLong(1) > 0) unsupported.add(rs.getLong(1) + " views/partitioned/foreign tables");
+                if (rs.getLong(2) > 0) unsupported.add(rs.getLong(2) + " functions");
+                if (rs.getLong(3) > 0) unsupported.add(rs.getLong(3) + " triggers");
+                if (rs.getLong(4) > 0) unsupported.add(rs.getLong(4) + " custom types");
+                return unsupported.isEmpty() ? null : String.join(", ", unsupported);
+            }
+        } catch (SQLException e) {
+            return "inspection failed: " + e.getMessage();
+        }
+    }
+
+    private List<String> queryStrings(Connection connection, String sql) throws SQLException {
+        return queryRows(connection, sql, 1).stream().map(row -> row[0]).toList();
+    }
+
+    private List<String[]> queryRows(Connection connection, String sql, int columns) throws SQLException {
+        List<String[]> rows = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, templateSchema);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String[] row = new String[columns];
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getString(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void setLocalSearchPath(Connection connection, String schemaName) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET LOCAL search_path TO " + quote(schemaName));
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
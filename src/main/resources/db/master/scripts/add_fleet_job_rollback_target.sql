@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-fleet-job-rollback-target
+-- Last changeset a count rollback keeps on the tenant ('' when it rolls back everything)
+ALTER TABLE public.fleet_job_tenants ADD COLUMN IF NOT EXISTS rollback_target VARCHAR(1000);
+
+--rollback ALTER TABLE public.fleet_job_tenants DROP COLUMN IF EXISTS rollback_target;
@@ -0,0 +1,32 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-hostname
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS hostname VARCHAR(255);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_tenants_hostname ON public.tenants(hostname);
+
+--rollback DROP INDEX IF EXISTS public.uk_tenants_hostname;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS hostname;
+
+--changeset realtygen:add-tenant-change-notify splitStatements:false
+-- Publish the id of every inserted, updated or deleted tenant row on the tenant_changes channel
+-- (delivered to listeners on commit, so every node's tenant registry can reload the row)
+CREATE OR REPLACE FUNCTION public.notify_tenant_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('tenant_changes', OLD.id::text);
+    ELSE
+        PERFORM pg_notify('tenant_changes', NEW.id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+--rollback DROP FUNCTION IF EXISTS public.notify_tenant_change();
+
+--changeset realtygen:add-tenant-change-trigger
+DROP TRIGGER IF EXISTS tenants_notify_change ON public.tenants;
+CREATE TRIGGER tenants_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON public.tenants
+    FOR EACH ROW EXECUTE FUNCTION public.notify_tenant_change();
+
+--rollback DROP TRIGGER IF EXISTS tenants_notify_change ON public.tenants;
@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-pool-tier
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS pool_tier VARCHAR(20) NOT NULL DEFAULT 'SHARED';
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS dedicated_pool_size INTEGER;
+
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS dedicated_pool_size;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS pool_tier;
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-schema-pinned
+-- Set by a rollback; lazy migration leaves the schema where it is until an explicit update
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS schema_pinned BOOLEAN NOT NULL DEFAULT false;
+
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS schema_pinned;
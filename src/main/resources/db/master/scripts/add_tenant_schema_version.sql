@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-schema-version
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS changelog_hash VARCHAR(64);
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS schema_migrated_at TIMESTAMP WITH TIME ZONE;
+
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS schema_migrated_at;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS changelog_hash;
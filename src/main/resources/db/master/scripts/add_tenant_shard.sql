@@ -0,0 +1,8 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-shard
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS shard_id VARCHAR(50) NOT NULL DEFAULT 'primary';
+CREATE INDEX IF NOT EXISTS idx_tenants_shard_id ON public.tenants(shard_id);
+
+--rollback DROP INDEX IF EXISTS public.idx_tenants_shard_id;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS shard_id;
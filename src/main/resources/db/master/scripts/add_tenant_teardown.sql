@@ -0,0 +1,12 @@
+--liquibase formatted sql
+
+--changeset realtygen:add-tenant-teardown
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS deactivated_at TIMESTAMP WITH TIME ZONE;
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS teardown_status VARCHAR(20);
+ALTER TABLE public.tenants ADD COLUMN IF NOT EXISTS archive_location VARCHAR(500);
+CREATE INDEX IF NOT EXISTS idx_tenants_teardown_status ON public.tenants(teardown_status);
+
+--rollback DROP INDEX IF EXISTS public.idx_tenants_teardown_status;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS archive_location;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS teardown_status;
+--rollback ALTER TABLE public.tenants DROP COLUMN IF EXISTS deactivated_at;
@@ -0,0 +1,35 @@
+--liquibase formatted sql
+
+--changeset realtygen:create-fleet-job-tables
+CREATE TABLE IF NOT EXISTS public.fleet_jobs (
+    job_id VARCHAR(36) PRIMARY KEY,
+    job_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    rollback_count INTEGER,
+    rollback_tag VARCHAR(100),
+    changelog_hash VARCHAR(64),
+    concurrency INTEGER NOT NULL,
+    owner_node VARCHAR(100),
+    heartbeat_at TIMESTAMP WITH TIME ZONE,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished_at TIMESTAMP WITH TIME ZONE,
+    error VARCHAR(1000)
+);
+
+CREATE INDEX IF NOT EXISTS idx_fleet_jobs_status ON public.fleet_jobs (status, heartbeat_at);
+
+CREATE TABLE IF NOT EXISTS public.fleet_job_tenants (
+    job_id VARCHAR(36) NOT NULL REFERENCES public.fleet_jobs (job_id) ON DELETE CASCADE,
+    schema_name VARCHAR(50) NOT NULL,
+    tenant_id VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    duration_ms BIGINT,
+    error VARCHAR(1000),
+    finished_at TIMESTAMP WITH TIME ZONE,
+    PRIMARY KEY (job_id, schema_name)
+);
+
+CREATE INDEX IF NOT EXISTS idx_fleet_job_tenants_status ON public.fleet_job_tenants (job_id, status);
+
+--rollback DROP TABLE IF EXISTS public.fleet_job_tenants;
+--rollback DROP TABLE IF EXISTS public.fleet_jobs;
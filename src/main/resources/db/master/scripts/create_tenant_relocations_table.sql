@@ -0,0 +1,28 @@
+--liquibase formatted sql
+
+--changeset realtygen:create-tenant-relocations-table
+CREATE TABLE IF NOT EXISTS public.tenant_relocations (
+    relocation_id VARCHAR(36) PRIMARY KEY,
+    tenant_id VARCHAR(50) NOT NULL,
+    schema_name VARCHAR(50) NOT NULL,
+    source_shard VARCHAR(50) NOT NULL,
+    target_shard VARCHAR(50) NOT NULL,
+    state VARCHAR(20) NOT NULL,
+    rows_copied BIGINT NOT NULL DEFAULT 0,
+    changes_replayed BIGINT NOT NULL DEFAULT 0,
+    write_pause_millis BIGINT,
+    owner_node VARCHAR(100),
+    heartbeat_at TIMESTAMP WITH TIME ZONE,
+    submitted_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    started_at TIMESTAMP WITH TIME ZONE,
+    finished_at TIMESTAMP WITH TIME ZONE,
+    duration_millis BIGINT,
+    error VARCHAR(1000)
+);
+
+-- At most one unfinished relocation per tenant, across all nodes
+CREATE UNIQUE INDEX IF NOT EXISTS uk_tenant_relocations_pending ON public.tenant_relocations (tenant_id)
+    WHERE state NOT IN ('SUCCEEDED', 'FAILED');
+CREATE INDEX IF NOT EXISTS idx_tenant_relocations_state ON public.tenant_relocations (state, heartbeat_at);
+
+--rollback DROP TABLE IF EXISTS public.tenant_relocations;
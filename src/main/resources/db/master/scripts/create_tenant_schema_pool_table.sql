@@ -0,0 +1,12 @@
+--liquibase formatted sql
+
+--changeset realtygen:create-tenant-schema-pool-table
+CREATE TABLE IF NOT EXISTS public.tenant_schema_pool (
+    schema_name VARCHAR(50) PRIMARY KEY,
+    changelog_hash VARCHAR(64) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_tenant_schema_pool_hash ON public.tenant_schema_pool (changelog_hash, created_at);
+
+--rollback DROP TABLE IF EXISTS public.tenant_schema_pool;
@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset realtygen:create-tenants-table
+CREATE TABLE IF NOT EXISTS public.tenants (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id VARCHAR(50) NOT NULL UNIQUE,
+    tenant_name VARCHAR(100) NOT NULL,
+    schema_name VARCHAR(50) NOT NULL UNIQUE,
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    description VARCHAR(500)
+);
+
+CREATE INDEX IF NOT EXISTS idx_tenants_active ON public.tenants (active);
+
+--rollback DROP TABLE IF EXISTS public.tenants;
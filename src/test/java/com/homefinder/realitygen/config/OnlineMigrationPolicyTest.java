@@ -0,0 +1,83 @@
+package com.homefinder.realitygen.config;
+
+import liquibase.change.core.CreateIndexChange;
+import liquibase.change.core.CreateTableChange;
+import liquibase.change.core.RawSQLChange;
+import liquibase.changelog.ChangeSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OnlineMigrationPolicyTest {
+
+    @Test
+    void createIndexChangeIsRefused() {
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(false), new CreateIndexChange()))
+                .contains("createIndex");
+    }
+
+    @Test
+    void rawCreateIndexWithoutConcurrentlyIsRefused() {
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(false),
+                new RawSQLChange("CREATE INDEX idx_users_email ON users (email)")))
+                .contains("without CONCURRENTLY");
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(false),
+                new RawSQLChange("create unique index idx_users_email on users (email)")))
+                .contains("without CONCURRENTLY");
+    }
+
+    @Test
+    void concurrentIndexBuildInsideATransactionIsRefused() {
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(true),
+                new RawSQLChange("CREATE INDEX CONCURRENTLY idx_users_email ON users (email)")))
+                .contains("runInTransaction:false");
+    }
+
+    @Test
+    void concurrentIndexBuildOutsideATransactionAndOtherChangesPass() {
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(false),
+                new RawSQLChange("CREATE UNIQUE INDEX CONCURRENTLY idx_users_email ON users (email)"))).isNull();
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(true),
+                new RawSQLChange("ALTER TABLE users ADD COLUMN phone VARCHAR(20)"))).isNull();
+        assertThat(OnlineMigrationPolicy.blockingIndexBuild(changeSet(true), new CreateTableChange())).isNull();
+    }
+
+    @Test
+    void wrappedLockTimeoutIsRecognised() {
+        OnlineMigrationPolicy policy = new OnlineMigrationPolicy();
+        SQLException lockTimeout = new SQLException("canceling statement due to lock timeout", "55P03");
+
+        assertThat(policy.isLockTimeout(lockTimeout)).isTrue();
+        assertThat(policy.isLockTimeout(new IllegalStateException("Migration failed",
+                new RuntimeException("changeset failed", lockTimeout)))).isTrue();
+        assertThat(policy.isLockTimeout(new IllegalStateException("Migration failed",
+                new SQLException("deadlock detected", "40P01")))).isFalse();
+        assertThat(policy.isLockTimeout(new IllegalStateException("Migration failed"))).isFalse();
+    }
+
+    @Test
+    void backoffDoublesWithJitterUpToTheMaximum() {
+        OnlineMigrationPolicy policy = new OnlineMigrationPolicy();
+        ReflectionTestUtils.setField(policy, "initialBackoffMillis", 500L);
+        ReflectionTestUtils.setField(policy, "maxBackoffMillis", 15_000L);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.backoffMillis(1)).isBetween(250L, 500L);
+            assertThat(policy.backoffMillis(3)).isBetween(1_000L, 2_000L);
+            assertThat(policy.backoffMillis(6)).isBetween(7_500L, 15_000L);
+            // Far past the cap, without overflowing the shift
+            assertThat(policy.backoffMillis(100)).isBetween(7_500L, 15_000L);
+        }
+    }
+
+    private static ChangeSet changeSet(boolean runInTransaction) {
+        ChangeSet changeSet = mock(ChangeSet.class);
+        when(changeSet.isRunInTransaction()).thenReturn(runInTransaction);
+        return changeSet;
+    }
+}
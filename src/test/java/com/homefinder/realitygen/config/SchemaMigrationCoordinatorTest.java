@@ -0,0 +1,140 @@
+package com.homefinder.realitygen.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaMigrationCoordinatorTest {
+
+    private static final String SCHEMA = "tenant_a";
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    private final SchemaMigrationCoordinator coordinator = new SchemaMigrationCoordinator();
+
+    @Test
+    void concurrentCallersRunTheMigrationOnce() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable migration = () -> {
+            runs.incrementAndGet();
+            awaitLatch(release);
+        };
+
+        Caller first = call(migration);
+        await(() -> coordinator.isInFlight(SCHEMA));
+        Caller second = call(migration);
+        // Parked on the first caller's migration, not running its own
+        await(() -> second.thread().getState() == Thread.State.WAITING);
+        release.countDown();
+
+        assertThat(failureOf(first)).isNull();
+        assertThat(failureOf(second)).isNull();
+        assertThat(runs).hasValue(1);
+        assertThat(coordinator.isInFlight(SCHEMA)).isFalse();
+    }
+
+    @Test
+    void waitersGetTheSameRuntimeException() throws Exception {
+        waitersShareTheFailure(new IllegalStateException("changeset failed"));
+    }
+
+    @Test
+    void waitersGetTheSameError() throws Exception {
+        waitersShareTheFailure(new StackOverflowError("changeset failed"));
+    }
+
+    @Test
+    void laterCallRunsTheMigrationAgain() {
+        AtomicInteger runs = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("changeset failed");
+
+        assertThatThrownBy(() -> coordinator.runOnce(SCHEMA, () -> {
+            runs.incrementAndGet();
+            throw failure;
+        })).isSameAs(failure);
+        assertThat(coordinator.isInFlight(SCHEMA)).isFalse();
+
+        coordinator.runOnce(SCHEMA, runs::incrementAndGet);
+        coordinator.runOnce(SCHEMA, runs::incrementAndGet);
+
+        assertThat(runs).hasValue(3);
+        assertThat(coordinator.isInFlight(SCHEMA)).isFalse();
+    }
+
+    private void waitersShareTheFailure(Throwable failure) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable migration = () -> {
+            awaitLatch(release);
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) failure;
+        };
+
+        Caller first = call(migration);
+        await(() -> coordinator.isInFlight(SCHEMA));
+        Caller second = call(migration);
+        await(() -> second.thread().getState() == Thread.State.WAITING);
+        release.countDown();
+
+        assertThat(failureOf(first)).isSameAs(failure);
+        assertThat(failureOf(second)).isSameAs(failure);
+        assertThat(coordinator.isInFlight(SCHEMA)).isFalse();
+    }
+
+    private Caller call(Runnable migration) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                coordinator.runOnce(SCHEMA, migration);
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return new Caller(thread, result);
+    }
+
+    /**
+     * What the caller's runOnce threw, or null when it returned
+     */
+    private static Throwable failureOf(Caller caller) throws Exception {
+        try {
+            caller.result().get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)).as("migration released in time").isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private record Caller(Thread thread, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,188 @@
+package com.homefinder.realitygen.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TenantConnectionBulkheadTest {
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Test
+    void tenantOverItsLimitTimesOut() throws SQLException {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(2, 10, 100, Map.of());
+
+        Connection first = bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection);
+        Connection second = bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection);
+
+        assertThatThrownBy(() -> bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection))
+                .isInstanceOf(SQLTransientConnectionException.class);
+        // Other tenants are not held up by it
+        bulkhead.getConnection("tenant_b", TenantConnectionBulkheadTest::newConnection).close();
+        assertThat(bulkhead.snapshot())
+                .containsExactly(Map.entry("tenant_a", new TenantConnectionBulkhead.TenantAdmission(2, 0)));
+
+        first.close();
+        second.close();
+        assertThat(bulkhead.snapshot()).isEmpty();
+    }
+
+    @Test
+    void closingTwiceReturnsThePermitOnce() throws SQLException {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(1, 2, 100, Map.of());
+        Connection raw = newConnection();
+
+        Connection connection = bulkhead.getConnection("tenant_a", () -> raw);
+        Connection other = bulkhead.getConnection("tenant_b", TenantConnectionBulkheadTest::newConnection);
+        connection.close();
+        connection.close();
+
+        verify(raw, times(2)).close();
+        assertThat(bulkhead.snapshot())
+                .containsExactly(Map.entry("tenant_b", new TenantConnectionBulkhead.TenantAdmission(1, 0)));
+        other.close();
+    }
+
+    @Test
+    void failedCheckoutReturnsThePermit() {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(1, 1, 100, Map.of());
+
+        assertThatThrownBy(() -> bulkhead.getConnection("tenant_a", () -> {
+            throw new SQLException("pool exhausted");
+        })).hasMessage("pool exhausted");
+        assertThat(bulkhead.snapshot()).isEmpty();
+    }
+
+    @Test
+    void freedPermitsFollowWeightedRoundRobin() throws Exception {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(10, 1, WAIT_MILLIS,
+                Map.of("tenant_a", 2));
+        Connection holder = bulkhead.getConnection("tenant_x", TenantConnectionBulkheadTest::newConnection);
+        List<String> grants = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<Future<?>> waiters = new ArrayList<>();
+            // Queue a, b, a, b, a, b so both tenants wait with three callers each
+            for (int i = 0; i < 3; i++) {
+                waiters.add(queue(executor, bulkhead, "tenant_a", grants));
+                awaitQueued(bulkhead, "tenant_a", i + 1);
+                waiters.add(queue(executor, bulkhead, "tenant_b", grants));
+                awaitQueued(bulkhead, "tenant_b", i + 1);
+            }
+
+            holder.close();
+            for (Future<?> waiter : waiters) {
+                waiter.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+
+            // tenant_a gets two permits per turn, tenant_b one
+            assertThat(grants).containsExactly("tenant_a", "tenant_a", "tenant_b", "tenant_a", "tenant_b", "tenant_b");
+            assertThat(bulkhead.snapshot()).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void interruptedWaiterLeavesTheQueueWithoutHoldingAPermit() throws Exception {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(1, 1, WAIT_MILLIS, Map.of());
+        Connection holder = bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiter = executor.submit(() -> {
+                try {
+                    bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection).close();
+                    return false;
+                } catch (SQLException e) {
+                    return Thread.currentThread().isInterrupted();
+                }
+            });
+            awaitQueued(bulkhead, "tenant_a", 1);
+
+            waiter.cancel(true);
+            await(() -> bulkhead.snapshot().get("tenant_a").queued() == 0);
+            assertThat(bulkhead.snapshot())
+                    .containsExactly(Map.entry("tenant_a", new TenantConnectionBulkhead.TenantAdmission(1, 0)));
+
+            holder.close();
+            assertThat(bulkhead.snapshot()).isEmpty();
+            // The only permit is free again
+            bulkhead.getConnection("tenant_b", TenantConnectionBulkheadTest::newConnection).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void interruptedCallerKeepsItsInterruptStatus() throws Exception {
+        TenantConnectionBulkhead bulkhead = new TenantConnectionBulkhead(1, 1, WAIT_MILLIS, Map.of());
+        Connection holder = bulkhead.getConnection("tenant_a", TenantConnectionBulkheadTest::newConnection);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> interrupted = executor.submit(() -> {
+                Thread.currentThread().interrupt();
+                try {
+                    bulkhead.getConnection("tenant_b", TenantConnectionBulkheadTest::newConnection).close();
+                    return false;
+                } catch (SQLException e) {
+                    return Thread.currentThread().isInterrupted();
+                }
+            });
+
+            assertThat(interrupted.get(WAIT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(bulkhead.snapshot())
+                    .containsExactly(Map.entry("tenant_a", new TenantConnectionBulkhead.TenantAdmission(1, 0)));
+            holder.close();
+            assertThat(bulkhead.snapshot()).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Future<?> queue(ExecutorService executor, TenantConnectionBulkhead bulkhead, String schemaName,
+                                   List<String> grants) {
+        return executor.submit(() -> {
+            try (Connection ignored = bulkhead.getConnection(schemaName, TenantConnectionBulkheadTest::newConnection)) {
+                grants.add(schemaName);
+            }
+            return null;
+        });
+    }
+
+    private static void awaitQueued(TenantConnectionBulkhead bulkhead, String schemaName, int queued)
+            throws InterruptedException {
+        await(() -> {
+            TenantConnectionBulkhead.TenantAdmission admission = bulkhead.snapshot().get(schemaName);
+            return admission != null && admission.queued() == queued;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static Connection newConnection() {
+        return mock(Connection.class);
+    }
+}
@@ -0,0 +1,126 @@
+package com.homefinder.realitygen.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantContextTest {
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    @AfterEach
+    void unbind() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void wrappedTasksCarryTheBindingToAnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TenantContext.set("a", "tenant_a");
+            AtomicReference<String> seen = new AtomicReference<>();
+
+            executor.submit(TenantContext.wrap(() -> seen.set(TenantContext.getSchemaName())))
+                    .get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            assertThat(seen).hasValue("tenant_a");
+
+            Callable<String> callable = TenantContext::getTenantId;
+            assertThat(executor.submit(TenantContext.wrap(callable)).get(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+                    .isEqualTo("a");
+
+            Supplier<String> supplier = TenantContext::getSchemaName;
+            assertThat(CompletableFuture.supplyAsync(TenantContext.wrapSupplier(supplier), executor)
+                    .get(WAIT_MILLIS, TimeUnit.MILLISECONDS)).isEqualTo("tenant_a");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void poolThreadIsLeftUnbound() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TenantContext.set("a", "tenant_a");
+            executor.submit(TenantContext.wrap(() -> { })).get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            Callable<String> callable = TenantContext::getTenantId;
+            executor.submit(TenantContext.wrap(callable)).get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            Supplier<String> supplier = TenantContext::getTenantId;
+            CompletableFuture.supplyAsync(TenantContext.wrapSupplier(supplier), executor)
+                    .get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+            // Same single pool thread, task not wrapped
+            assertThat(executor.submit(() -> TenantContext.getTenantId()).get(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+                    .isNull();
+            assertThat(executor.submit(() -> TenantContext.getSchemaName()).get(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+                    .isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void callerRunningTheTaskItselfGetsItsBindingBack() throws Exception {
+        TenantContext.set("a", "tenant_a");
+        AtomicReference<String> seen = new AtomicReference<>();
+        Runnable runnable = TenantContext.wrap(() -> seen.set(TenantContext.getTenantId()));
+        Callable<String> callable = TenantContext.wrap((Callable<String>) TenantContext::getTenantId);
+        Supplier<String> supplier = TenantContext.wrapSupplier(TenantContext::getTenantId);
+
+        // e.g. CallerRunsPolicy, or a future completed on the calling thread
+        TenantContext.set("b", "tenant_b");
+        runnable.run();
+        assertThat(seen).hasValue("a");
+        assertThat(callable.call()).isEqualTo("a");
+        assertThat(supplier.get()).isEqualTo("a");
+
+        assertThat(TenantContext.getTenantId()).isEqualTo("b");
+        assertThat(TenantContext.getSchemaName()).isEqualTo("tenant_b");
+    }
+
+    @Test
+    void bindingIsRestoredWhenTheTaskFails() {
+        TenantContext.set("a", "tenant_a");
+        Runnable failing = TenantContext.wrap((Runnable) () -> {
+            throw new IllegalStateException("task failed");
+        });
+
+        TenantContext.set("b", "tenant_b");
+        assertThatThrownBy(failing::run).hasMessage("task failed");
+        assertThat(TenantContext.getTenantId()).isEqualTo("b");
+    }
+
+    @Test
+    void runAsRestoresThePreviousBinding() {
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        TenantContext.runAs("a", "tenant_a", () -> seen.set(TenantContext.getSchemaName()));
+        assertThat(seen).hasValue("tenant_a");
+        assertThat(TenantContext.getTenantId()).isNull();
+
+        TenantContext.set("b", "tenant_b");
+        TenantContext.runAs("a", "tenant_a", () -> seen.set(TenantContext.getSchemaName()));
+        assertThat(seen).hasValue("tenant_a");
+        assertThat(TenantContext.getSchemaName()).isEqualTo("tenant_b");
+    }
+
+    @Test
+    void unboundWrapReturnsTheOriginalTask() {
+        Runnable runnable = () -> { };
+        Callable<String> callable = () -> "result";
+        Supplier<String> supplier = () -> "result";
+
+        assertThat(TenantContext.wrap(runnable)).isSameAs(runnable);
+        assertThat(TenantContext.wrap(callable)).isSameAs(callable);
+        assertThat(TenantContext.wrapSupplier(supplier)).isSameAs(supplier);
+    }
+}
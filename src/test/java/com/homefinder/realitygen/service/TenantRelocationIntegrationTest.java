@@ -0,0 +1,264 @@
+package com.homefinder.realitygen.service;
+
+import com.homefinder.realitygen.config.TenantContext;
+import com.homefinder.realitygen.config.TenantRoutingDataSource;
+import com.homefinder.realitygen.entity.Tenant;
+import com.homefinder.realitygen.entity.TenantRelocation;
+import com.homefinder.realitygen.enums.RelocationState;
+import com.homefinder.realitygen.repository.TenantRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Moves a tenant between two databases of one PostgreSQL container while a client
+ * keeps writing to it, then checks that no write failed and the target has every committed write
+ */
+@SpringBootTest(properties = {
+        "realtygen.node-id=relocation-test",
+        "realtygen.sharding.placement.excluded-shards=" + TenantRelocationIntegrationTest.TARGET_SHARD,
+        // Small batches, so the writes during the copy take several catch-up rounds
+        "realtygen.tenancy.relocation.batch-size=50",
+        "realtygen.tenancy.relocation.catch-up-timeout-ms=60000",
+        "realtygen.tenancy.relocation.cleanup-delay-ms=0"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class TenantRelocationIntegrationTest {
+
+    static final String TARGET_SHARD = "shard-b";
+
+    private static final int SEEDED_USERS = 20_000;
+
+    private static final String SWAPPED_EMAIL = "swap@example.com";
+
+    private static final long WAIT_MILLIS = 60_000;
+
+    @Container
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void databases(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(),
+                postgres.getUsername(), postgres.getPassword());
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE DATABASE shard_b");
+        }
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("realtygen.sharding.shards." + TARGET_SHARD, () -> "jdbc:postgresql://"
+                + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/shard_b");
+    }
+
+    @Autowired
+    private TenantProvisioningService provisioningService;
+
+    @Autowired
+    private TenantRelocationService relocationService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private TenantRoutingDataSource routingDataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void relocatesTenantWhileItKeepsWriting() throws Exception {
+        Tenant tenant = provisioningService.provisionNewTenant("relocated", "Relocated Corp");
+        String schemaName = tenant.getSchemaName();
+        assertThat(tenant.getShardId()).isEqualTo(Tenant.PRIMARY_SHARD);
+        try (Connection connection = routingDataSource.getSchemaConnection(schemaName);
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO " + schemaName + ".users (name, email, password) "
+                    + "SELECT 'user-' || i, 'user-' || i || '@example.com', 'secret' "
+                    + "FROM generate_series(1, " + SEEDED_USERS + ") AS i");
+            stmt.execute("INSERT INTO " + schemaName + ".users (name, email, password) "
+                    + "VALUES ('swap-0', '" + SWAPPED_EMAIL + "', 'secret')");
+        }
+
+        Writer writer = new Writer("relocated", schemaName);
+        writer.start();
+        try {
+            writer.awaitCommitted(10);
+            TenantRelocation relocation = relocationService.submit("relocated", TARGET_SHARD);
+            relocation = awaitFinished(relocation.getRelocationId());
+
+            assertThat(relocation.getState()).as("relocation error: %s", relocation.getError())
+                    .isEqualTo(RelocationState.SUCCEEDED);
+            assertThat(relocation.getRowsCopied()).isGreaterThanOrEqualTo(SEEDED_USERS);
+            // Writes made during the copy reached the target through catch-up
+            assertThat(relocation.getChangesReplayed()).isPositive();
+
+            // The client keeps writing, now on the target
+            writer.awaitCommitted(writer.committed.get() + 10);
+        } finally {
+            writer.stopped.set(true);
+        }
+        writer.done.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Writes rejected by the fence at cutover were retried on the target, none surfaced
+        assertThat(writer.failed.get()).as("failed transactions, first: %s", writer.firstFailure.get())
+                .isZero();
+
+        assertThat(tenantRepository.findByTenantId("relocated")).get()
+                .extracting(Tenant::getShardId).isEqualTo(TARGET_SHARD);
+        assertThat(routingDataSource.shardOf(schemaName)).isEqualTo(TARGET_SHARD);
+        try (Connection source = routingDataSource.shardDataSource(Tenant.PRIMARY_SHARD).getConnection()) {
+            assertThat(queryLong(source, "SELECT count(*) FROM pg_namespace WHERE nspname = '" + schemaName + "'"))
+                    .isZero();
+        }
+
+        int last = writer.committed.get();
+        try (Connection target = routingDataSource.shardDataSource(TARGET_SHARD).getConnection()) {
+            assertThat(queryLong(target, "SELECT count(*) FROM " + schemaName + ".users"))
+                    .isEqualTo(SEEDED_USERS + 1 + last);
+            assertThat(queryLong(target, "SELECT count(*) FROM " + schemaName + ".users WHERE email LIKE 'writer-%'"))
+                    .isEqualTo(last);
+            // Deleted and re-inserted with the same unique email in every write
+            assertThat(queryString(target, "SELECT name FROM " + schemaName + ".users WHERE email = '"
+                    + SWAPPED_EMAIL + "'")).isEqualTo("swap-" + last);
+            assertThat(queryString(target, "SELECT name FROM " + schemaName + ".users WHERE id = "
+                    + updatedId(last))).isEqualTo("renamed-" + last);
+            assertThat(queryString(target, "SELECT to_regclass('" + schemaName + "."
+                    + TenantRelocationService.CHANGES_TABLE + "')::text")).isNull();
+        }
+    }
+
+    private TenantRelocation awaitFinished(String relocationId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (true) {
+            TenantRelocation relocation = relocationService.getRelocation(relocationId).orElseThrow();
+            if (EnumSet.of(RelocationState.SUCCEEDED, RelocationState.FAILED).contains(relocation.getState())) {
+                return relocation;
+            }
+            assertThat(System.currentTimeMillis()).as("relocation finished in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Row renamed by a write
+     */
+    private static long updatedId(int write) {
+        return write % SEEDED_USERS + 1;
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static String queryString(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /**
+     * Client of the tenant: each transaction updates a row, deletes and re-inserts the
+     * row holding a unique email, and inserts a new row. It runs through the app's
+     * transaction template and JPA, bound to the tenant like a request, so the fence
+     * rejections at cutover are retried by the app; any transaction that still fails is counted.
+     */
+    private final class Writer {
+
+        private final String tenantId;
+        private final String schemaName;
+        private final AtomicInteger committed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private CompletableFuture<Void> done;
+
+        Writer(String tenantId, String schemaName) {
+            this.tenantId = tenantId;
+            this.schemaName = schemaName;
+        }
+
+        void start() {
+            done = CompletableFuture.runAsync(this::run);
+        }
+
+        private void run() {
+            TenantContext.set(tenantId, schemaName);
+            try {
+                while (!stopped.get()) {
+                    int write = committed.get() + 1;
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> write(write));
+                        committed.set(write);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        firstFailure.compareAndSet(null, e);
+                    }
+                    Thread.sleep(2);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                TenantContext.clear();
+            }
+        }
+
+        private void write(int write) {
+            String users = schemaName + ".users";
+            entityManager.createNativeQuery("UPDATE " + users + " SET name = ?1 WHERE id = ?2")
+                    .setParameter(1, "renamed-" + write)
+                    .setParameter(2, updatedId(write))
+                    .executeUpdate();
+
+            entityManager.createNativeQuery("DELETE FROM " + users + " WHERE email = ?1")
+                    .setParameter(1, SWAPPED_EMAIL)
+                    .executeUpdate();
+            insert(users, "swap-" + write, SWAPPED_EMAIL);
+
+            insert(users, "writer-" + write, "writer-" + write + "@example.com");
+        }
+
+        private void insert(String users, String name, String email) {
+            entityManager.createNativeQuery("INSERT INTO " + users + " (name, email, password) "
+                            + "VALUES (?1, ?2, 'secret')")
+                    .setParameter(1, name)
+                    .setParameter(2, email)
+                    .executeUpdate();
+        }
+
+        void awaitCommitted(int writes) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (committed.get() < writes) {
+                assertThat(done).as("writer still running").isNotDone();
+                assertThat(System.currentTimeMillis()).as(writes + " writes committed in time").isLessThan(deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+}